@@ -0,0 +1,75 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import person.Person;
+import person.VisionTable;
+import person.strategy.DefaultStrategy;
+import world.GrainIndex;
+import world.Grid;
+import world.Population;
+import world.World;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the two ways of finding the best patch against each other at the same radius:
+ * the scan of every patch of a vision table and the grain index of the grid. Both answer the
+ * same query from the patch of every person of a standard world after a burn-in of 100 ticks,
+ * so the radius where the index starts winning is where Person.INDEXED_VISION belongs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BestPatchBenchmark {
+    @Param({"1", "3", "5", "6", "7", "8", "10", "12", "25"})
+    private int radius;
+
+    private Grid grid;
+    private GrainIndex index;
+    private VisionTable visionTable;
+    private int[] cells;
+
+    @Setup(Level.Trial)
+    public void burnIn() {
+        World world = new World(Fixtures.burnIn(Fixtures.config(250, 51), new DefaultStrategy(), 100),
+                new DefaultStrategy());
+        grid = world.getGrid();
+        index = grid.getGrainIndex();
+        index.refreshAll(); // queries then only read the index
+        visionTable = VisionTable.forRadius(radius);
+        Population people = world.getPopulation();
+        cells = new int[people.size()];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = people.get(i).getCell();
+        }
+    }
+
+    @Benchmark
+    public void scan(Blackhole blackhole) {
+        for (int cell : cells) {
+            blackhole.consume(Person.scanBestPatch(grid, cell, visionTable));
+        }
+    }
+
+    @Benchmark
+    public void grainIndex(Blackhole blackhole) {
+        for (int cell : cells) {
+            blackhole.consume(index.findBest(cell, radius));
+        }
+    }
+}
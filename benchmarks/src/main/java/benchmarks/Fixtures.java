@@ -0,0 +1,47 @@
+package benchmarks;
+
+import person.strategy.ReproductionStrategy;
+import world.SweepSpec;
+import world.World;
+import world.WorldCheckpoint;
+import world.WorldConfig;
+
+/**
+ * Fixtures builds the worlds the benchmarks run on. Every fixture is seeded with SEED,
+ * so a benchmark measures the same state on every commit and the results are comparable.
+ */
+final class Fixtures {
+    static final long SEED = 42;
+
+    private Fixtures() {
+    }
+
+    /**
+     * @return the configuration of a standard world of the given size, seeded with SEED
+     */
+    static WorldConfig config(int people, int size) {
+        WorldConfig config = new WorldConfig(people, 1, SEED);
+        config.setSize(size, size);
+        return config;
+    }
+
+    /**
+     * Sets up a world and runs it for a number of ticks, so that grain and wealth are
+     * spread as they are during a run rather than as they are at setup.
+     *
+     * @return the checkpoint of the world after the burn-in
+     */
+    static WorldCheckpoint burnIn(WorldConfig config, ReproductionStrategy strategy, int ticks) {
+        World world = new World(config, strategy); // reports nothing, as nobody observes it
+        world.advanceTo(ticks);
+        return world.checkpoint();
+    }
+
+    /**
+     * @param name Default, Inheritance or RandomSpawn
+     * @return a new instance of that strategy
+     */
+    static ReproductionStrategy strategy(String name) {
+        return SweepSpec.createStrategy(name);
+    }
+}
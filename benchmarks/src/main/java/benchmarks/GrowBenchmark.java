@@ -0,0 +1,55 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import person.strategy.DefaultStrategy;
+import world.Grid;
+import world.World;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the growth of grain. A growth event on its own is only counted, so the
+ * sweep over every patch is measured by growing and then bringing the stored grain of
+ * every patch up to date, as the operations working on the whole grid do.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GrowBenchmark {
+    @Param({"51", "256", "1024"})
+    private int size;
+
+    private Grid grid;
+
+    @Setup(Level.Iteration)
+    public void createGrid() {
+        grid = new World(Fixtures.config(0, size), new DefaultStrategy()).getGrid();
+    }
+
+    @Benchmark
+    public Grid grow() {
+        grid.grow();
+        return grid;
+    }
+
+    @Benchmark
+    public Grid growSweep() {
+        grid.grow();
+        grid.materializeGrain();
+        return grid;
+    }
+}
@@ -0,0 +1,80 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import person.strategy.ReproductionStrategy;
+import world.Population;
+import world.World;
+import world.WorldCheckpoint;
+import world.WorldConfig;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks what people do every tick, on a standard world after a burn-in of 100 ticks.
+ *
+ * findBestPatch is measured through proposeMove, which only looks, so every invocation sees
+ * the same world. The vision of people is drawn up to the maximum vision as in the model;
+ * from Person.INDEXED_VISION on, the search goes through the grain index of the grid.
+ * tick moves every person once and changes the world, which is restored from the burn-in
+ * before every iteration.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PersonBenchmark {
+    @Param({"1", "3", "5", "8", "12", "25"})
+    private int maxVision;
+
+    @Param({"Default"})
+    private String strategy;
+
+    private ReproductionStrategy reproduction;
+    private WorldCheckpoint checkpoint;
+    private World world;
+
+    @Setup(Level.Trial)
+    public void burnIn() {
+        WorldConfig config = Fixtures.config(250, 51);
+        config.setMaxVision(maxVision);
+        reproduction = Fixtures.strategy(strategy);
+        checkpoint = Fixtures.burnIn(config, reproduction, 100);
+    }
+
+    @Setup(Level.Iteration)
+    public void restore() {
+        world = new World(checkpoint, reproduction);
+        world.getGrid().getGrainIndex(); // built once per world, not on the first measured search
+    }
+
+    @Benchmark
+    public void findBestPatch(Blackhole blackhole) {
+        Population people = world.getPopulation();
+        for (int i = 0; i < people.size(); i++) {
+            blackhole.consume(people.get(i).proposeMove());
+        }
+    }
+
+    @Benchmark
+    public void tick() {
+        Population people = world.getPopulation();
+        int numAgents = people.size();
+        for (int i = 0; i < numAgents; i++) {
+            people.get(i).tick(reproduction);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import person.strategy.ReproductionStrategy;
+import world.Population;
+import world.World;
+import world.WorldCheckpoint;
+import world.WorldConfig;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks each reproduction strategy when everybody dies: people live for a single
+ * tick, so every call of reproduce replaces a person. The world is restored from the
+ * same seeded burn-in before every iteration.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ReproductionBenchmark {
+    @Param({"Default", "Inheritance", "RandomSpawn"})
+    private String strategy;
+
+    @Param({"250", "1000"})
+    private int people;
+
+    private ReproductionStrategy reproduction;
+    private WorldCheckpoint checkpoint;
+    private World world;
+
+    @Setup(Level.Trial)
+    public void burnIn() {
+        WorldConfig config = Fixtures.config(people, 51);
+        config.setLifespan(1, 1);
+        reproduction = Fixtures.strategy(strategy);
+        checkpoint = Fixtures.burnIn(config, reproduction, 10);
+    }
+
+    @Setup(Level.Iteration)
+    public void restore() {
+        world = new World(checkpoint, reproduction);
+    }
+
+    @Benchmark
+    public void reproduce() {
+        Population population = world.getPopulation();
+        int numAgents = population.size();
+        for (int i = 0; i < numAgents; i++) {
+            reproduction.reproduce(population.get(i), world);
+        }
+    }
+}
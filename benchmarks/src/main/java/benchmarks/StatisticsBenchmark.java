@@ -0,0 +1,54 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import stats.WealthStatistics;
+import util.RandomSource;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the statistics World.printStatistics reports, including the Gini coefficient,
+ * for populations of the given size. The wealth of people is drawn once from SEED with a
+ * long tail, as after a burn-in; it is copied to a scratch buffer before every computation
+ * because the computation sorts it in place.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StatisticsBenchmark {
+    @Param({"100", "250", "1000", "10000", "100000"})
+    private int population;
+
+    private int[] wealth;
+    private int[] scratch;
+
+    @Setup(Level.Trial)
+    public void drawWealth() {
+        RandomSource random = new RandomSource(Fixtures.SEED);
+        wealth = new int[population];
+        for (int i = 0; i < population; i++) {
+            wealth[i] = (int) (-100 * Math.log(1 - random.nextDouble()));
+        }
+        scratch = new int[population];
+    }
+
+    @Benchmark
+    public WealthStatistics computeStatistics() {
+        System.arraycopy(wealth, 0, scratch, 0, population);
+        return WealthStatistics.of(scratch, population);
+    }
+}
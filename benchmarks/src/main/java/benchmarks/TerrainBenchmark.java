@@ -0,0 +1,66 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import person.strategy.DefaultStrategy;
+import util.RandomSource;
+import world.Grid;
+import world.World;
+import world.WorldConfig;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks setting up the terrain: the diffusion of grain alone and the whole of
+ * World.setupPatches, which also rolls the best land and floors the grain, on square
+ * worlds of the given size. Every invocation rolls the same terrain from SEED.
+ * A world without people is only its terrain, so creating one measures setupPatches.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TerrainBenchmark {
+    @Param({"51", "256", "1024"})
+    private int size;
+
+    @Param({"false", "true"})
+    private boolean sequentialDiffusion;
+
+    private WorldConfig config;
+    private Grid grid;
+
+    @Setup(Level.Trial)
+    public void configure() {
+        config = Fixtures.config(0, size);
+        config.setSequentialDiffusion(sequentialDiffusion);
+    }
+
+    @Setup(Level.Invocation)
+    public void rollTerrain() {
+        grid = new Grid(size, size, config.getLayout(), new RandomSource(Fixtures.SEED));
+    }
+
+    @Benchmark
+    public Grid diffuse() {
+        grid.diffuse(15, sequentialDiffusion);
+        return grid;
+    }
+
+    @Benchmark
+    public Grid setupPatches() {
+        return new World(config, new DefaultStrategy()).getGrid();
+    }
+}
@@ -0,0 +1,86 @@
+/* This is a tool checking that the grain index finds the patches the scan of a person finds */
+
+import person.strategy.DefaultStrategy;
+import util.RandomSource;
+import world.GrainIndex;
+import world.Grid;
+import world.World;
+import world.WorldConfig;
+
+/**
+ * CheckGrainIndex compares GrainIndex.findBest with the original scan of a person's vision
+ * (CheckVisionScan.originalScan) on grids whose grain and occupants keep changing.
+ *
+ * Each round grows the grain, harvests random patches, moves random people to random free
+ * patches and then queries random patches at every radius up to a quarter of the smaller
+ * side. Grids of several sizes are checked, including sizes that are no multiple of the tile
+ * size of the index. The check stops at the first answer that differs and exits with status 1.
+ */
+public class CheckGrainIndex {
+    private static final int[][] SIZES = {{51, 51}, {37, 29}, {100, 64}};
+    private static final int ROUNDS = 200;
+    private static final int QUERIES = 20; // per radius and round
+
+    /**
+     * Checks every grid size for a number of seeds.
+     *
+     * @param args optionally the number of seeds (defaults to 5), followed by the first seed (defaults to 42)
+     */
+    public static void main(String[] args) {
+        int numSeeds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        long firstSeed = args.length > 1 ? Long.parseLong(args[1]) : 42;
+
+        long queries = 0;
+        for (long seed = firstSeed; seed < firstSeed + numSeeds; seed++) {
+            for (int[] size : SIZES) {
+                WorldConfig config = new WorldConfig(size[0] * size[1] / 10, 1, seed);
+                config.setSize(size[0], size[1]);
+                queries += check(new World(config, new DefaultStrategy()).getGrid(), new RandomSource(seed));
+            }
+        }
+        System.out.printf("%d grain index queries match the original scan%n", queries);
+    }
+
+    /**
+     * Changes a grid round after round and compares the index with the scan after each round.
+     *
+     * @return the number of queries checked
+     */
+    private static long check(Grid grid, RandomSource random) {
+        GrainIndex index = grid.getGrainIndex();
+        int maxRadius = Math.min(grid.getWidth(), grid.getHeight()) / 4;
+        long queries = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            grid.grow();
+            for (int i = 0; i < grid.size() / 20; i++) {
+                grid.setGrain(grid.index(random.nextInt(grid.getWidth()), random.nextInt(grid.getHeight())), 0);
+            }
+            for (int i = 0; i < grid.size() / 50; i++) {
+                int from = grid.index(random.nextInt(grid.getWidth()), random.nextInt(grid.getHeight()));
+                int to = grid.index(random.nextInt(grid.getWidth()), random.nextInt(grid.getHeight()));
+                if (grid.isOccupied(from) && !grid.isOccupied(to)) {
+                    int person = grid.getOccupant(from);
+                    grid.clearOccupant(from);
+                    grid.setOccupant(to, person);
+                }
+            }
+
+            for (int radius = 1; radius <= maxRadius; radius++) {
+                for (int q = 0; q < QUERIES; q++) {
+                    int cell = grid.index(random.nextInt(grid.getWidth()), random.nextInt(grid.getHeight()));
+                    int found = index.findBest(cell, radius);
+                    int expected = CheckVisionScan.originalScan(grid, cell, radius);
+                    if (found != expected) {
+                        System.err.printf("%dx%d grid, round %d, radius %d from (%d, %d): index finds (%d, %d), "
+                                        + "the scan (%d, %d)%n",
+                                grid.getWidth(), grid.getHeight(), round, radius, grid.xOf(cell), grid.yOf(cell),
+                                grid.xOf(found), grid.yOf(found), grid.xOf(expected), grid.yOf(expected));
+                        System.exit(1);
+                    }
+                    queries++;
+                }
+            }
+        }
+        return queries;
+    }
+}
@@ -0,0 +1,124 @@
+/* This is a tool checking that people move exactly as the original vision scan decided */
+
+import person.Person;
+import person.strategy.DefaultStrategy;
+import person.strategy.InheritanceStrategy;
+import person.strategy.RandomSpawnStrategy;
+import person.strategy.ReproductionStrategy;
+import world.Grid;
+import world.Population;
+import world.World;
+import world.WorldConfig;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * CheckVisionScan replays seeded runs and compares every movement decision of every person
+ * with the scan people originally made: every offset of the square around them, filtered to
+ * the diamond of their vision, wrapped with a modulo. Decisions come from Person.proposeMove,
+ * which walks a VisionTable, or asks the grain index of the grid from Person.INDEXED_VISION on.
+ *
+ * Each run ticks its people one after another as the sequential tick of World does, so the
+ * decisions are taken on the states of a real run. The check stops at the first decision that
+ * differs and exits with status 1.
+ */
+public class CheckVisionScan {
+    private static final int[] MAX_VISIONS = {5, 7, 10}; // the default, the largest table scan, the index
+
+    /**
+     * Checks runs of every reproduction strategy and maximum vision for a number of seeds.
+     *
+     * @param args optionally the number of seeds (defaults to 10), followed by the first seed (defaults to 42)
+     */
+    public static void main(String[] args) {
+        int numSeeds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        long firstSeed = args.length > 1 ? Long.parseLong(args[1]) : 42;
+        List<ReproductionStrategy> strategies = Arrays.asList(
+                new DefaultStrategy(), new RandomSpawnStrategy(), new InheritanceStrategy());
+
+        long decisions = 0;
+        int runs = 0;
+        for (long seed = firstSeed; seed < firstSeed + numSeeds; seed++) {
+            for (ReproductionStrategy strategy : strategies) {
+                for (int maxVision : MAX_VISIONS) {
+                    WorldConfig config = new WorldConfig(250, 1, seed);
+                    config.setMaxVision(maxVision);
+                    decisions += check(new World(config, strategy));
+                    runs++;
+                }
+            }
+        }
+        System.out.printf("%d movement decisions of %d runs match the original scan%n", decisions, runs);
+    }
+
+    /**
+     * Runs a world to its last tick, comparing each decision before the person moves.
+     *
+     * @return the number of decisions checked
+     */
+    private static long check(World world) {
+        Grid grid = world.getGrid();
+        Population people = world.getPopulation();
+        ReproductionStrategy strategy = world.getStrategy();
+        WorldConfig config = world.getConfig();
+
+        long decisions = 0;
+        for (int tick = world.getTick(); tick <= config.getMaxTick(); tick += 2) {
+            if (tick % config.getGrainGrowthRate() == 0) {
+                grid.grow();
+            }
+            int numAgents = people.size();
+            for (int i = 0; i < numAgents; i++) {
+                Person person = people.get(i);
+                int decided = person.proposeMove();
+                int expected = originalScan(grid, person.getCell(), person.getVision());
+                if (decided != expected) {
+                    System.err.printf("Seed %d, %s, max vision %d, tick %d: person %d with vision %d at (%d, %d) "
+                                    + "moves to (%d, %d) instead of (%d, %d)%n",
+                            world.getSeed(), strategy, config.getMaxVision(), tick, person.getId(), person.getVision(),
+                            grid.xOf(person.getCell()), grid.yOf(person.getCell()),
+                            grid.xOf(decided), grid.yOf(decided), grid.xOf(expected), grid.yOf(expected));
+                    System.exit(1);
+                }
+                decisions++;
+                person.moveTo(decided);
+                person.harvest();
+                strategy.reproduce(person, world);
+            }
+        }
+        return decisions;
+    }
+
+    /**
+     * The scan of Person.findBestPatch before the vision tables, on the patches of a grid.
+     *
+     * @return the first unoccupied patch with strictly more grain than the patch of the person, or that patch
+     */
+    static int originalScan(Grid grid, int cell, int vision) {
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+        int x = grid.xOf(cell);
+        int y = grid.yOf(cell);
+
+        int bestPatch = cell;
+        double maxGrain = grid.getGrain(cell);
+        for (int dx = -vision; dx <= vision; dx++) {
+            for (int dy = -vision; dy <= vision; dy++) {
+                if (Math.abs(dx) + Math.abs(dy) <= vision) {
+                    int newX = (x + dx + width) % width;
+                    int newY = (y + dy + height) % height;
+                    if (grid.isValidCoord(newX, newY)) {
+                        int patch = grid.index(newX, newY);
+                        // Only consider unoccupied patches
+                        if (!grid.isOccupied(patch) && grid.getGrain(patch) > maxGrain) {
+                            maxGrain = grid.getGrain(patch);
+                            bestPatch = patch;
+                        }
+                    }
+                }
+            }
+        }
+        return bestPatch;
+    }
+}
@@ -0,0 +1,145 @@
+/* This is a tool checking that a sweep on workers writes the files of a local sweep, even when a worker dies */
+
+import world.OutputFormat;
+import world.Simulation;
+import world.SweepSpec;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * CheckWorkers runs a small sweep in this process, then runs it again on worker processes,
+ * killing one of the workers partway through, and compares the output files of both runs.
+ *
+ * The worker is killed a third of the local run time after the workers have started, so the
+ * pool has to hand its unit to another worker and start a new one. The check exits with status 1
+ * if the sweep finished before a worker could be killed, or at the first file that differs.
+ */
+public class CheckWorkers {
+    private static final String PREFIX = "CheckWorkers";
+    private static final List<String> SWEEP = Arrays.asList(
+            "[" + PREFIX + "]",
+            "population = 250, 500",
+            "growth = 1, 5",
+            "replicates = 5",
+            "output = " + PREFIX + "-{population}-{growth}");
+    private static final Path OUTPUT_PATH = Paths.get("stat"); // where Simulation writes its files
+
+    /**
+     * Runs the sweep locally and on workers, and compares their files.
+     *
+     * @param args optionally the number of workers (defaults to 2), followed by the seed (defaults to 42)
+     * @throws IOException if the output files cannot be read or deleted
+     * @throws InterruptedException if interrupted while killing a worker
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int workers = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42;
+        SweepSpec spec = SweepSpec.parse(SWEEP, PREFIX);
+
+        clearOutput();
+        long start = System.nanoTime();
+        Simulation local = new Simulation(1, seed, OutputFormat.CSV);
+        local.setConsoleOutput(false);
+        local.runSweep(spec);
+        long localMillis = (System.nanoTime() - start) / 1_000_000;
+        Map<String, byte[]> expected = readOutput();
+        clearOutput();
+
+        Killer killer = new Killer(localMillis / 3);
+        Simulation distributed = new Simulation(1, seed, OutputFormat.CSV);
+        distributed.setConsoleOutput(false);
+        distributed.setWorkers(workers);
+        killer.start();
+        try {
+            distributed.runSweep(spec);
+        } finally {
+            distributed.close();
+            killer.interrupt();
+            killer.join();
+        }
+        Map<String, byte[]> actual = readOutput();
+        clearOutput();
+
+        if (killer.killed == null) {
+            System.err.println("The sweep finished before a worker could be killed");
+            System.exit(1);
+        }
+        if (!expected.keySet().equals(actual.keySet())) {
+            System.err.printf("Workers wrote %s instead of %s%n", actual.keySet(), expected.keySet());
+            System.exit(1);
+        }
+        for (Map.Entry<String, byte[]> file : expected.entrySet()) {
+            if (!Arrays.equals(file.getValue(), actual.get(file.getKey()))) {
+                System.err.printf("%s differs on workers%n", file.getKey());
+                System.exit(1);
+            }
+        }
+        System.out.printf("%d output files of %d workers match the local run, with worker %d killed after %d ms%n",
+                expected.size(), workers, killer.killed, killer.delayMillis);
+    }
+
+    /**
+     * @return the content of every output file of the sweep, by file name
+     */
+    private static Map<String, byte[]> readOutput() throws IOException {
+        Map<String, byte[]> files = new TreeMap<>();
+        for (Path file : listOutput()) {
+            files.put(file.getFileName().toString(), Files.readAllBytes(file));
+        }
+        return files;
+    }
+
+    private static void clearOutput() throws IOException {
+        for (Path file : listOutput()) {
+            Files.delete(file);
+        }
+    }
+
+    private static List<Path> listOutput() throws IOException {
+        if (!Files.isDirectory(OUTPUT_PATH)) {
+            return Arrays.asList();
+        }
+        try (Stream<Path> files = Files.list(OUTPUT_PATH)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(PREFIX)).collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Killer waits for the first worker process, then kills a worker after its delay.
+     */
+    private static class Killer extends Thread {
+        private final long delayMillis;
+        private volatile Long killed; // the process id of the killed worker, once killed
+
+        Killer(long delayMillis) {
+            super("killer");
+            this.delayMillis = delayMillis;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!ProcessHandle.current().children().findAny().isPresent()) {
+                    Thread.sleep(10);
+                }
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                return; // the sweep is over
+            }
+            Optional<ProcessHandle> worker = ProcessHandle.current().children().filter(ProcessHandle::isAlive).findFirst();
+            if (worker.isPresent() && worker.get().destroyForcibly()) {
+                killed = worker.get().pid();
+            }
+        }
+    }
+}
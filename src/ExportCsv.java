@@ -0,0 +1,33 @@
+/* This is a tool converting binary results into CSV */
+
+import world.BinaryRunFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * ExportCsv converts a binary output file of the simulation into the CSV file
+ * the simulation would have written, so the Python scripts can process it.
+ */
+public class ExportCsv {
+
+    /**
+     * Converts one binary file.
+     *
+     * @param args the binary file, optionally followed by the CSV file to write
+     *             (defaults to the same name with a .csv extension)
+     * @throws IOException if a file cannot be accessed or the binary file is invalid
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java ExportCsv <file.bin> [file.csv]");
+            System.exit(1);
+        }
+        Path binary = Paths.get(args[0]);
+        Path csv = args.length > 1 ? Paths.get(args[1])
+                : Paths.get(args[0].replaceFirst("\\.bin$", "") + ".csv");
+        BinaryRunFile.exportCsv(binary, csv);
+        System.out.println("Exported " + binary + " to " + csv);
+    }
+}
@@ -1,11 +1,19 @@
 /* This is where the model will run */
 
+import metrics.Metrics;
+import metrics.MetricsReporter;
 import person.strategy.DefaultStrategy;
 import util.Params;
-import world.Patch;
+import world.ConsoleObserver;
+import world.OutputFormat;
 import world.Simulation;
+import world.SweepSpec;
 import world.World;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Locale;
+
 /**
  * Main class to run the simulation model.
  *
@@ -19,16 +27,48 @@ public class Main {
      * The entry point of the simulation program.
      * It runs simulations for various grain growth rates, population sizes,
      * and reproduction strategies.
+     *
+     * @param args optionally the number of simulations to run concurrently (defaults to 1),
+     *             followed by the seed of the whole sweep (defaults to an arbitrary seed)
+     *             and the output format, csv, binary or packed (defaults to csv), optionally followed
+     *             by a sweep file to run instead of the standard sweeps
+     * @throws IOException if the sweep file cannot be read
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        int parallelism = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+        OutputFormat format = args.length > 2 ? OutputFormat.valueOf(args[2].toUpperCase(Locale.ROOT)) : OutputFormat.CSV;
+        System.out.println("Simulation seed: " + seed);
+
+        // With -Dwealth.metrics=true, the time of every phase is written to a metrics file while running
+        MetricsReporter reporter = null;
+        if (Metrics.ENABLED) {
+            reporter = Metrics.startReporter(Paths.get(System.getProperty("wealth.metrics.file", "stat/metrics.prom")),
+                    Long.getLong("wealth.metrics.period", 10));
+        }
+
         // Comment out if only wish to see simulation results
-        Simulation simulation = new Simulation();
-        simulation.simulateVariousGrowthRate();
-        simulation.simulateVariousPopulation();
-        simulation.simulateVariousReproductionRule();
+        Simulation simulation = new Simulation(parallelism, seed, format);
+        simulation.setConsoleOutput(!Boolean.getBoolean("wealth.quiet")); // -Dwealth.quiet=true for headless sweeps
+        simulation.setWorkers(Integer.getInteger("wealth.workers", 0)); // -Dwealth.workers=N to run in N processes
+        try {
+            if (args.length > 3) {
+                simulation.runSweep(SweepSpec.parse(Paths.get(args[3])));
+            } else {
+                simulation.simulateVariousGrowthRate();
+                simulation.simulateVariousPopulation();
+                simulation.simulateVariousReproductionRule();
+            }
+        } finally {
+            simulation.close();
+            if (reporter != null) {
+                reporter.close();
+            }
+        }
 
         // Only Simulation, do not write results to csv files
 //        World world = new World(Params.NUM_PEOPLE, Params.GRAIN_GROWTH_INTERVAL, new DefaultStrategy());
+//        world.addObserver(new ConsoleObserver());
 //        world.runSimulation();
     }
 
@@ -0,0 +1,177 @@
+package metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Metrics collects where the time of the simulation goes, for every world of the JVM.
+ *
+ * Instrumentation is switched on with the system property wealth.metrics=true. The switch
+ * is a static final constant, so with instrumentation off the JIT removes every probe and
+ * the simulation runs exactly as without it.
+ *
+ * With instrumentation on, every phase of every tick is timed (see Phase), together with
+ * the births, deaths and bytes allocated by the simulating thread in each tick. Each tick
+ * is also a TickEvent and each batch of results an OutputEvent of the flight recorder,
+ * e.g. with -XX:StartFlightRecording. The totals and histograms of all runs are kept here
+ * and can be written as a text file in the Prometheus exposition format, periodically
+ * with startReporter.
+ */
+public final class Metrics {
+    public static final boolean ENABLED = Boolean.getBoolean("wealth.metrics");
+
+    static final int BUCKETS = 64; // bucket b counts durations below 2^b nanoseconds
+    private static final int FIRST_REPORTED_BUCKET = 10; // about a microsecond
+    private static final int LAST_REPORTED_BUCKET = 36; // about a minute
+
+    private static final long[] phaseNanos = new long[Phase.values().length];
+    private static final long[] phaseCount = new long[Phase.values().length];
+    private static final long[][] phaseHistogram = new long[Phase.values().length][BUCKETS];
+    private static final long[] phaseBytes = new long[Phase.values().length];
+    private static long ticks;
+    private static long births;
+    private static long deaths;
+    private static long allocatedBytes;
+
+    private Metrics() {
+    }
+
+    /**
+     * @return the histogram bucket of a duration
+     */
+    static int bucketOf(long nanos) {
+        return 64 - Long.numberOfLeadingZeros(Math.max(nanos, 0));
+    }
+
+    /**
+     * @return the bytes allocated so far by the current thread, or 0 if the JVM cannot tell
+     */
+    static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            long bytes = ((com.sun.management.ThreadMXBean) threads).getCurrentThreadAllocatedBytes();
+            return Math.max(bytes, 0);
+        }
+        return 0;
+    }
+
+    /**
+     * Adds the counts a probe gathered since its last flush.
+     */
+    static synchronized void merge(long[] nanos, long[] counts, long[][] histogram,
+                                   long numTicks, long numBirths, long numDeaths, long allocated) {
+        for (int p = 0; p < nanos.length; p++) {
+            phaseNanos[p] += nanos[p];
+            phaseCount[p] += counts[p];
+            for (int b = 0; b < BUCKETS; b++) {
+                phaseHistogram[p][b] += histogram[p][b];
+            }
+        }
+        ticks += numTicks;
+        births += numBirths;
+        deaths += numDeaths;
+        allocatedBytes += allocated;
+    }
+
+    /**
+     * Records a batch of results handed to the sink or appended to its file.
+     * Does nothing unless instrumentation is on.
+     *
+     * @param phase OUTPUT or WRITE
+     * @param file the name of the file the batch belongs to
+     * @param bytes the size of the batch
+     * @param startNanos the value of System.nanoTime when handling the batch started
+     */
+    public static void recordBatch(Phase phase, String file, long bytes, long startNanos) {
+        if (!ENABLED) {
+            return;
+        }
+        long nanos = System.nanoTime() - startNanos;
+        synchronized (Metrics.class) {
+            int p = phase.ordinal();
+            phaseNanos[p] += nanos;
+            phaseCount[p]++;
+            phaseHistogram[p][bucketOf(nanos)]++;
+            phaseBytes[p] += bytes;
+        }
+        OutputEvent event = new OutputEvent();
+        if (event.shouldCommit()) {
+            event.phase = phase.getLabel();
+            event.file = file;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    /**
+     * @return the current totals and histograms in the Prometheus text exposition format
+     */
+    public static synchronized String snapshot() {
+        StringBuilder out = new StringBuilder();
+        out.append("# HELP wealth_phase_seconds Time spent in each phase, per tick or per batch of results.\n");
+        out.append("# TYPE wealth_phase_seconds histogram\n");
+        for (Phase phase : Phase.values()) {
+            int p = phase.ordinal();
+            long cumulative = 0;
+            for (int b = 0; b <= LAST_REPORTED_BUCKET; b++) {
+                cumulative += phaseHistogram[p][b];
+                if (b >= FIRST_REPORTED_BUCKET) {
+                    out.append("wealth_phase_seconds_bucket{phase=\"").append(phase.getLabel()).append("\",le=\"")
+                            .append((double) (1L << b) / 1e9).append("\"} ").append(cumulative).append('\n');
+                }
+            }
+            out.append("wealth_phase_seconds_bucket{phase=\"").append(phase.getLabel()).append("\",le=\"+Inf\"} ")
+                    .append(phaseCount[p]).append('\n');
+            out.append("wealth_phase_seconds_sum{phase=\"").append(phase.getLabel()).append("\"} ")
+                    .append(phaseNanos[p] / 1e9).append('\n');
+            out.append("wealth_phase_seconds_count{phase=\"").append(phase.getLabel()).append("\"} ")
+                    .append(phaseCount[p]).append('\n');
+        }
+        counter(out, "wealth_output_bytes_total", "Bytes of results handed to the sink.", phaseBytes[Phase.OUTPUT.ordinal()]);
+        counter(out, "wealth_written_bytes_total", "Bytes of results appended to files.", phaseBytes[Phase.WRITE.ordinal()]);
+        counter(out, "wealth_ticks_total", "Ticks simulated.", ticks);
+        counter(out, "wealth_births_total", "People born during ticks.", births);
+        counter(out, "wealth_deaths_total", "People who died during ticks.", deaths);
+        counter(out, "wealth_allocated_bytes_total", "Bytes allocated by the simulating threads during ticks.", allocatedBytes);
+        return out.toString();
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Writes the current snapshot to a file, replacing it in one step so that readers
+     * never see a partial file.
+     *
+     * @param path the metrics file
+     * @throws UncheckedIOException if the file cannot be written
+     */
+    public static void writeTo(Path path) {
+        Path partial = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            Files.write(partial, snapshot().getBytes(StandardCharsets.UTF_8));
+            Files.move(partial, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write " + path, e);
+        }
+    }
+
+    /**
+     * Starts writing the snapshot to a file at a fixed period, on a background thread.
+     *
+     * @param path the metrics file
+     * @param periodSeconds the time between two writes
+     * @return the reporter, which writes a last snapshot when closed
+     */
+    public static MetricsReporter startReporter(Path path, long periodSeconds) {
+        return new MetricsReporter(path, periodSeconds);
+    }
+}
@@ -0,0 +1,59 @@
+package metrics;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MetricsReporter writes the snapshot of Metrics to a file at a fixed period, so a long
+ * sweep can be watched while it runs, e.g. by a Prometheus textfile collector.
+ */
+public class MetricsReporter implements AutoCloseable {
+    private final Path path;
+    private final ScheduledExecutorService timer;
+
+    /**
+     * Starts writing the metrics file.
+     *
+     * @param path the metrics file
+     * @param periodSeconds the time between two writes
+     * @throws IllegalArgumentException if the period is not positive
+     */
+    MetricsReporter(Path path, long periodSeconds) {
+        if (periodSeconds < 1) {
+            throw new IllegalArgumentException("periodSeconds must be at least 1: " + periodSeconds);
+        }
+        this.path = path;
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleAtFixedRate(this::report, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    private void report() {
+        try {
+            Metrics.writeTo(path);
+        } catch (UncheckedIOException e) {
+            // keep reporting, the file may be writable again next time
+            System.err.println(e.getMessage() + ": " + e.getCause());
+        }
+    }
+
+    /**
+     * Stops the periodic writes and writes the final snapshot.
+     */
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        try {
+            timer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Metrics.writeTo(path);
+    }
+}
@@ -0,0 +1,28 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * OutputEvent is the flight recorder event of results being handed to the sink of a file
+ * or appended to it, depending on the phase.
+ */
+@Name("wealth.Output")
+@Label("Simulation Output")
+@Category("Wealth Distribution")
+@Description("Results of a run handed to the sink or appended to their file")
+class OutputEvent extends Event {
+    @Label("Phase")
+    String phase;
+
+    @Label("File")
+    String file;
+
+    @Label("Size")
+    @DataAmount
+    long bytes;
+}
@@ -0,0 +1,24 @@
+package metrics;
+
+/**
+ * The phases the time of a run is split into.
+ */
+public enum Phase {
+    GROW("grow"), // growth of the grain of every patch
+    MOVE("move"), // finding the best patch and moving to it
+    HARVEST("harvest"), // harvesting the grain of the current patch
+    REPRODUCE("reproduce"), // metabolism, ageing and the reproduction strategy
+    STATISTICS("statistics"), // computing, printing and recording the wealth statistics
+    OUTPUT("output"), // formatting the results of a run and handing them to the sink
+    WRITE("write"); // appending results to their file, on the writer threads of the sink
+
+    private final String label;
+
+    Phase(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
@@ -0,0 +1,54 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * TickEvent is the flight recorder event of one tick of a world.
+ */
+@Name("wealth.Tick")
+@Label("Simulation Tick")
+@Category("Wealth Distribution")
+@Description("One tick of a world, split into phases")
+class TickEvent extends Event {
+    @Label("Seed")
+    long seed;
+
+    @Label("Tick")
+    int tick;
+
+    @Label("Grow")
+    @Timespan
+    long growNanos;
+
+    @Label("Move")
+    @Timespan
+    long moveNanos;
+
+    @Label("Harvest")
+    @Timespan
+    long harvestNanos;
+
+    @Label("Reproduce")
+    @Timespan
+    long reproduceNanos;
+
+    @Label("Statistics")
+    @Timespan
+    long statisticsNanos;
+
+    @Label("Births")
+    int births;
+
+    @Label("Deaths")
+    int deaths;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocatedBytes;
+}
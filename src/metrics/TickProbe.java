@@ -0,0 +1,131 @@
+package metrics;
+
+import java.util.Arrays;
+
+/**
+ * TickProbe times the ticks of one world, phase by phase, on the thread simulating it.
+ *
+ * The world marks the end of each phase with lap, which charges the time since the
+ * previous mark to that phase. Counts are kept locally and added to Metrics every
+ * FLUSH_TICKS ticks and when the world stops, so worlds running concurrently rarely
+ * contend. A probe is only created when Metrics.ENABLED is set.
+ */
+public final class TickProbe {
+    private static final int FLUSH_TICKS = 64;
+    private static final Phase[] TICK_PHASES = {Phase.GROW, Phase.MOVE, Phase.HARVEST, Phase.REPRODUCE, Phase.STATISTICS};
+
+    private final long seed;
+    private final long[] tickNanos = new long[Phase.values().length]; // of the current tick
+    private final long[] nanos = new long[Phase.values().length]; // since the last flush
+    private final long[] counts = new long[Phase.values().length];
+    private final long[][] histogram = new long[Phase.values().length][Metrics.BUCKETS];
+    private long ticks;
+    private long births;
+    private long deaths;
+    private long allocated;
+
+    private TickEvent event;
+    private int tick;
+    private int nextIdAtStart;
+    private int populationAtStart;
+    private long allocatedAtStart;
+    private long last;
+
+    /**
+     * @param seed the seed of the world, identifying it in flight recordings
+     */
+    public TickProbe(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Marks the start of a tick.
+     *
+     * @param tick the tick starting
+     * @param nextPersonId the id the next person born will get
+     * @param population the number of people alive
+     */
+    public void startTick(int tick, int nextPersonId, int population) {
+        this.tick = tick;
+        this.nextIdAtStart = nextPersonId;
+        this.populationAtStart = population;
+        this.allocatedAtStart = Metrics.allocatedBytes();
+        this.event = new TickEvent();
+        event.begin();
+        this.last = System.nanoTime();
+    }
+
+    /**
+     * Charges the time since the previous mark to a phase.
+     *
+     * @param phase the phase that just ended
+     */
+    public void lap(Phase phase) {
+        long now = System.nanoTime();
+        tickNanos[phase.ordinal()] += now - last;
+        last = now;
+    }
+
+    /**
+     * Marks the end of a tick. Every person born took a new id, and the population
+     * changed by the births less the deaths.
+     *
+     * @param nextPersonId the id the next person born will get
+     * @param population the number of people alive
+     */
+    public void endTick(int nextPersonId, int population) {
+        int tickBirths = nextPersonId - nextIdAtStart;
+        int tickDeaths = tickBirths - (population - populationAtStart);
+        long tickAllocated = Metrics.allocatedBytes() - allocatedAtStart;
+        for (Phase phase : TICK_PHASES) {
+            int p = phase.ordinal();
+            nanos[p] += tickNanos[p];
+            counts[p]++;
+            histogram[p][Metrics.bucketOf(tickNanos[p])]++;
+        }
+        ticks++;
+        births += tickBirths;
+        deaths += tickDeaths;
+        allocated += tickAllocated;
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.seed = seed;
+            event.tick = tick;
+            event.growNanos = tickNanos[Phase.GROW.ordinal()];
+            event.moveNanos = tickNanos[Phase.MOVE.ordinal()];
+            event.harvestNanos = tickNanos[Phase.HARVEST.ordinal()];
+            event.reproduceNanos = tickNanos[Phase.REPRODUCE.ordinal()];
+            event.statisticsNanos = tickNanos[Phase.STATISTICS.ordinal()];
+            event.births = tickBirths;
+            event.deaths = tickDeaths;
+            event.allocatedBytes = tickAllocated;
+            event.commit();
+        }
+        event = null;
+        Arrays.fill(tickNanos, 0);
+
+        if (ticks == FLUSH_TICKS) {
+            flush();
+        }
+    }
+
+    /**
+     * Adds everything counted so far to Metrics.
+     */
+    public void flush() {
+        if (ticks == 0) {
+            return;
+        }
+        Metrics.merge(nanos, counts, histogram, ticks, births, deaths, allocated);
+        Arrays.fill(nanos, 0);
+        Arrays.fill(counts, 0);
+        for (long[] buckets : histogram) {
+            Arrays.fill(buckets, 0);
+        }
+        ticks = 0;
+        births = 0;
+        deaths = 0;
+        allocated = 0;
+    }
+}
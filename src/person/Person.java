@@ -1,30 +1,38 @@
 /* This class is in charge of how people move within the system */
 
 package person;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Random;
-
 import person.strategy.ReproductionStrategy;
 import util.Params;
-import world.Patch;
+import util.RandomSource;
+import world.Grid;
 import world.World;
+import world.WorldConfig;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 /**
  * Represents a person(agent) in the simulation.
  *
  * A person has attributes such as life expectancy, age, metabolism, wealth,
- * vision, and a reference to their current patch and the world they exist in.
+ * vision, the index of their current patch in the grid and the world they exist in.
  * A person can move around the world, harvest resources, age, metabolize,
  * and reproduce using a given strategy.
  */
 public class Person{
+    // From this vision on, the grain index of the grid is faster than scanning every patch
+    public static final int INDEXED_VISION = 8;
+
+    private final int id;
+    private int slot; // position in the population of the world, maintained by Population
     private int lifeExpectancy;
     private int age; 
     private int metabolism;
     private int wealth;
     private int vision;
-    private Patch currentPatch;
+    private VisionTable visionTable; // offsets of the patches within vision
+    private int cell; // index of the current patch in the grid of the world
     private World world;
 
     /**
@@ -32,78 +40,147 @@ public class Person{
      * metabolism, vision, and wealth.
      *
      * Wealth is randomly assigned and not inherited at creation without ReproductionStrategy.
+     * All attributes are drawn from the random source of the world,
+     * within the ranges set by its configuration.
      *
      * @param world the world the person exists in
      */
     public Person(World world) {
+        RandomSource random = world.getRandom();
+        WorldConfig config = world.getConfig();
+        this.id = world.nextPersonId();
         this.world = world;
-        this.lifeExpectancy = Params.lifeExpectancy();
-        Random random = new Random();
+        this.lifeExpectancy = Params.lifeExpectancy(random, config.getMinLife(), config.getMaxLife());
         this.age = random.nextInt(this.lifeExpectancy); // even if a person is created, their actual age is still randomise
-        this.metabolism = Params.metabolism();
+        this.metabolism = Params.metabolism(random, config.getMaxMetabolism());
         this.wealth = random.nextInt(50) + this.metabolism;
-        this.vision = Params.vision();
+        this.vision = Params.vision(random, config.getMaxVision());
+        this.visionTable = VisionTable.forRadius(this.vision);
+    }
+
+    /**
+     * Constructs a person saved by writeTo, in the given world.
+     * The id is the saved one, so no new id is taken from the world.
+     *
+     * @param world the world the person exists in, whose grid is already restored
+     * @param in the input to read from
+     * @throws IOException if the input cannot be read
+     */
+    private Person(World world, DataInput in) throws IOException {
+        this.id = in.readInt();
+        this.world = world;
+        this.lifeExpectancy = in.readInt();
+        this.age = in.readInt();
+        this.metabolism = in.readInt();
+        this.wealth = in.readInt();
+        this.vision = in.readInt();
+        this.visionTable = VisionTable.forRadius(this.vision);
+        this.cell = world.getGrid().readCell(in);
+    }
+
+    /**
+     * Reads a person saved by writeTo.
+     *
+     * @param world the world the person exists in, whose grid is already restored
+     * @param in the input to read from
+     * @return the restored person, not yet added to the population
+     * @throws IOException if the input cannot be read
+     */
+    public static Person readFrom(World world, DataInput in) throws IOException {
+        return new Person(world, in);
+    }
+
+    /**
+     * Writes every attribute of this person. The patch is saved by its row-major position,
+     * so it does not depend on the layout of the grid.
+     *
+     * @param out the output to write to
+     * @throws IOException if the output cannot be written
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(id);
+        out.writeInt(lifeExpectancy);
+        out.writeInt(age);
+        out.writeInt(metabolism);
+        out.writeInt(wealth);
+        out.writeInt(vision);
+        world.getGrid().writeCell(out, cell);
     }
 
     /**
      * Finds the best unoccupied patch with the highest amount of grain
      * within the person's vision range.
      *
-     * @return the patch with the most grain that is within reach
+     * Small visions are scanned patch by patch with the vision table of the person; large
+     * visions are answered by the grain index of the grid, which picks the same patch.
+     *
+     * @return the index of the patch with the most grain that is within reach
      */
-    private synchronized Patch findBestPatch() {
-        Patch[][] map = world.getMap();
-        List<Patch> visiblePatches = new ArrayList<>();
-        int x = currentPatch.getXCoord();
-        int y = currentPatch.getYCoord();
-
-        // Add patches within vision distance
-        for (int dx = -vision; dx <= vision; dx++) {
-            for (int dy = -vision; dy <= vision; dy++) {
-                if (Math.abs(dx) + Math.abs(dy) <= vision) {
-                    int newX = (x + dx + World.maxCoord) % World.maxCoord;
-                    int newY = (y + dy + World.maxCoord) % World.maxCoord;
-                    if (isValidCoord(newX, newY)) {
-                        Patch patch = map[newX][newY];
-                        if (patch.getPerson() == null) { // Only consider unoccupied patches
-                            visiblePatches.add(patch);
-                        }
-                    }
-                }
-            }
+    private int findBestPatch() {
+        Grid grid = world.getGrid();
+        if (vision >= INDEXED_VISION) {
+            return grid.getGrainIndex().findBest(cell, vision);
         }
-
-        // Find patch with maximum grain
-        Patch bestPatch = currentPatch;
-        double maxGrain = currentPatch.getGrain();
-        for (Patch p : visiblePatches) {
-            if (p.getGrain() > maxGrain) {
-                maxGrain = p.getGrain();
-                bestPatch = p;
-            }
-        }
-        return bestPatch;
+        return scanBestPatch(grid, cell, visionTable);
     }
 
     /**
-     * Checks if the given coordinates are within valid bounds of the world.
+     * Scans every patch of a vision table around a patch for the best unoccupied one.
+     *
+     * The patches within vision are visited in the order of the table and the first patch
+     * with strictly more grain than the best so far wins, starting from the given patch.
+     * Coordinates wrap around the edges of the world, which is a single addition or
+     * subtraction as long as the radius of the table is smaller than the world.
      *
-     * @param x the x-coordinate
-     * @param y the y-coordinate
-     * @return true if the coordinates are valid, false otherwise
+     * @param grid the grid to scan
+     * @param cell the index of the patch the scan starts from
+     * @param visionTable the offsets of the patches to scan
+     * @return the index of the patch with the most grain, or the given patch if none has more
      */
-    private boolean isValidCoord(int x, int y) {
-        return x >= 0 && x < World.maxCoord && y >= 0 && y < World.maxCoord;
+    public static int scanBestPatch(Grid grid, int cell, VisionTable visionTable) {
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+        int x = grid.xOf(cell);
+        int y = grid.yOf(cell);
+
+        int bestPatch = cell;
+        double maxGrain = grid.getGrain(cell);
+        for (int k = 0; k < visionTable.size(); k++) {
+            int newX = x + visionTable.getDx(k);
+            if (newX < 0) {
+                newX += width;
+            } else if (newX >= width) {
+                newX -= width;
+            }
+            int newY = y + visionTable.getDy(k);
+            if (newY < 0) {
+                newY += height;
+            } else if (newY >= height) {
+                newY -= height;
+            }
+
+            // Only consider unoccupied patches
+            int patch = grid.index(newX, newY);
+            if (!grid.isOccupied(patch)) {
+                double grain = grid.getGrain(patch);
+                if (grain > maxGrain) {
+                    maxGrain = grain;
+                    bestPatch = patch;
+                }
+            }
+        }
+        return bestPatch;
     }
 
     /**
      * Harvests grain from the current patch and adds it to the person's wealth.
      * The patch's grain is reset to zero after harvesting.
      */
-    private void harvest() {
-        double grain = currentPatch.getGrain();
+    public void harvest() {
+        Grid grid = world.getGrid();
+        double grain = grid.getGrain(cell);
         this.wealth += (int) grain;
-        currentPatch.setGrain(0);
+        grid.setGrain(cell, 0);
     }
 
     /**
@@ -136,13 +213,42 @@ public class Person{
      */
     public void tick(ReproductionStrategy strategy) {
         // Move to best patch
-        Patch bestPatch = findBestPatch();
-        if (bestPatch != currentPatch) {
-            currentPatch.setPerson(null);
-            bestPatch.setPerson(this);
-            currentPatch = bestPatch;
+        moveTo(proposeMove());
+
+        harvestAndReproduce(strategy);
+    }
+
+    /**
+     * Finds the patch this person would move to, without changing anything.
+     * Several people can propose moves concurrently as long as the world does not change.
+     *
+     * @return the index of the best patch within vision, or the current patch
+     */
+    public int proposeMove() {
+        return findBestPatch();
+    }
+
+    /**
+     * Moves the person to the given patch, which must be empty unless it is the current one.
+     *
+     * @param patch the index of the patch to move to
+     */
+    public void moveTo(int patch) {
+        if (patch != cell) {
+            Grid grid = world.getGrid();
+            grid.clearOccupant(cell);
+            grid.setOccupant(patch, id);
+            cell = patch;
         }
+    }
 
+    /**
+     * Harvests the grain of the current patch and then undergoes reproduction
+     * based on the given strategy.
+     *
+     * @param strategy the reproduction strategy used during this tick
+     */
+    public void harvestAndReproduce(ReproductionStrategy strategy) {
         // Harvest grain
         harvest();
 
@@ -150,8 +256,20 @@ public class Person{
     }
 
     //--- Getter and setter functions ---//
-    public void setPatch(Patch patch) {
-        this.currentPatch = patch;
+    public int getId() {
+        return id;
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    public void setSlot(int slot) {
+        this.slot = slot;
+    }
+
+    public void setCell(int cell) {
+        this.cell = cell;
     }
 
     public void setWealth(int wealth) { this.wealth = wealth; }
@@ -160,7 +278,11 @@ public class Person{
         return wealth;
     }
 
-    public Patch getCurrentPatch() {
-        return currentPatch;
+    public int getCell() {
+        return cell;
+    }
+
+    public int getVision() {
+        return vision;
     }
 }
@@ -0,0 +1,79 @@
+package person;
+
+import util.Params;
+
+/**
+ * A VisionTable lists the offsets of every patch a person with a given vision can see.
+ *
+ * The offsets form a diamond of Manhattan radius equal to the vision, without the centre,
+ * in the order the scan of a person has always visited them: by increasing dx, then by
+ * increasing dy. Because that order decides ties between patches with equal grain, it
+ * must not change. Tables are shared and immutable; they are built once per radius.
+ */
+public class VisionTable {
+    private static volatile VisionTable[] tables = build(Params.MAX_VISION);
+
+    private final int[] dx;
+    private final int[] dy;
+
+    private VisionTable(int radius) {
+        // 2r(r+1) patches lie within distance r of the centre, excluding the centre itself
+        int size = 2 * radius * (radius + 1);
+        this.dx = new int[size];
+        this.dy = new int[size];
+
+        int k = 0;
+        for (int i = -radius; i <= radius; i++) {
+            for (int j = -radius; j <= radius; j++) {
+                if (Math.abs(i) + Math.abs(j) <= radius && (i != 0 || j != 0)) {
+                    dx[k] = i;
+                    dy[k] = j;
+                    k++;
+                }
+            }
+        }
+    }
+
+    private static VisionTable[] build(int maxRadius) {
+        VisionTable[] result = new VisionTable[maxRadius + 1];
+        for (int r = 0; r <= maxRadius; r++) {
+            result[r] = new VisionTable(r);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the table of the given radius, building the tables up to it if needed.
+     * @param radius the vision of a person
+     * @return the offsets of the patches within that vision
+     */
+    public static VisionTable forRadius(int radius) {
+        VisionTable[] current = tables;
+        if (radius >= current.length) {
+            synchronized (VisionTable.class) {
+                if (radius >= tables.length) {
+                    tables = build(radius);
+                }
+                current = tables;
+            }
+        }
+        return current[radius];
+    }
+
+    //--- Getter functions ---//
+
+    /**
+     * @return the number of offsets in the table
+     */
+    public int size() {
+        return dx.length;
+    }
+
+    public int getDx(int k) {
+        return dx[k];
+    }
+
+    public int getDy(int k) {
+        return dy[k];
+    }
+}
@@ -1,7 +1,6 @@
 package person.strategy;
 
 import person.Person;
-import world.Patch;
 import world.World;
 
 /**
@@ -19,23 +18,22 @@ public class DefaultStrategy implements ReproductionStrategy {
      *
      * If the specified person dies after metabolizing, this method creates
      * a new Person object, places them in the same patch as the deceased
-     * person, removes the dead person from the world, and adds the new
-     * person to the population.
+     * person, and replaces the dead person with the new person in the
+     * population of the world.
      *
      * @param person the person to check for reproduction (only replaced if dead)
      * @param world the simulation world where reproduction occurs
      */
     @Override
     public void reproduce(Person person, World world) {
-        Patch parentPatch = person.getCurrentPatch();
+        int parentCell = person.getCell();
 
         if (!person.isAliveAfterMetabolizeAndAging()) {
             Person newPerson = new Person(world);
-            newPerson.setPatch(parentPatch);
+            newPerson.setCell(parentCell);
 
-            parentPatch.setPerson(newPerson);
-            world.getPeople().remove(person);
-            world.getPeople().add(newPerson);
+            world.getGrid().setOccupant(parentCell, newPerson.getId());
+            world.getPopulation().replace(person, newPerson);
         }
     }
 
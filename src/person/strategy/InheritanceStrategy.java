@@ -1,7 +1,6 @@
 package person.strategy;
 
 import person.Person;
-import world.Patch;
 import world.World;
 
 /**
@@ -20,7 +19,7 @@ public class InheritanceStrategy implements ReproductionStrategy {
      *
      * If the given person has died after metabolizing, a new Person is created
      * at the same patch, inheriting the deceased person's wealth. The old person
-     * is removed from the world's list of people and the new one is added.
+     * is replaced by the new one in the world's population.
      *
      * @param person the person to check for reproduction (only replaced if dead)
      * @param world the simulation world where the reproduction takes place
@@ -28,17 +27,16 @@ public class InheritanceStrategy implements ReproductionStrategy {
     @Override
     public void reproduce(Person person, World world) {
         int inheritance = person.getWealth();
-        Patch parentPatch = person.getCurrentPatch();
+        int parentCell = person.getCell();
 
         // The new Person is created at the same patch
         if (!person.isAliveAfterMetabolizeAndAging()) {
             Person newPerson = new Person(world);
-            newPerson.setPatch(parentPatch);
+            newPerson.setCell(parentCell);
             newPerson.setWealth(inheritance);
 
-            parentPatch.setPerson(newPerson);
-            world.getPeople().remove(person);
-            world.getPeople().add(newPerson);
+            world.getGrid().setOccupant(parentCell, newPerson.getId());
+            world.getPopulation().replace(person, newPerson);
         }
     }
 
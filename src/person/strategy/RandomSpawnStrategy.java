@@ -1,8 +1,7 @@
 package person.strategy;
 
 import person.Person;
-import util.Params;
-import world.Patch;
+import world.Grid;
 import world.World;
 
 
@@ -20,33 +19,27 @@ public class RandomSpawnStrategy implements ReproductionStrategy{
      * Replaces a dead person with a new person spawned at a random unoccupied patch.
      *
      * If the given person has died after metabolizing, a new Person object is created
-     * and placed in a randomly selected empty patch. The dead person is removed from
-     * the world's people list and the new person is added in their place.
+     * and placed in a randomly selected empty patch, which may be the patch the dead
+     * person leaves, so a full grid still has one. The dead person is replaced by the
+     * new person in the world's population.
      *
      * @param person the person to check for reproduction (only replaced if dead)
      * @param world the simulation world in which the reproduction takes place
      */
     @Override
     public void reproduce(Person person, World world) {
-        Patch[][] map = world.getMap();
+        Grid grid = world.getGrid();
 
         if (!person.isAliveAfterMetabolizeAndAging()) {
-            int x, y;
-            Patch patch;
+            grid.clearOccupant(person.getCell());
 
             // New person is placed in a randomly selected empty patch
-            do {
-                x = Params.rollCoord();
-                y = Params.rollCoord();
-                patch = map[x][y];
-            } while (patch.getPerson() != null);
+            int cell = grid.randomFreeCell(world.getRandom());
             Person newPerson = new Person(world);
-            newPerson.setPatch(patch);
-            patch.setPerson(newPerson);
+            newPerson.setCell(cell);
+            grid.setOccupant(cell, newPerson.getId());
 
-            world.getPeople().remove(person);
-            person.getCurrentPatch().setPerson(null);
-            world.getPeople().add(newPerson);
+            world.getPopulation().replace(person, newPerson);
         }
     }
 
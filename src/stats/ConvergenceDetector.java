@@ -0,0 +1,175 @@
+package stats;
+
+/**
+ * ConvergenceDetector watches the samples of a run and tells when they have become stationary,
+ * so the run can stop instead of simulating a steady state up to its last tick.
+ *
+ * It keeps the last window samples of the Gini coefficient, of the fraction of people in
+ * each class and of the mean wealth. The window is stationary when, for each of them, both
+ * the drift of the least-squares line through the window (its slope times the length of the
+ * window) and the difference between the means of the two halves of the window are within
+ * the tolerance. The tolerance is absolute for the Gini coefficient and the class fractions,
+ * and relative to the mean for the mean wealth. The first test rejects a trend, the second a
+ * level shift that a noisy window hides from the line.
+ *
+ * Once the window is stationary, the detector stays converged and its steady state is the
+ * mean of every statistic over that window.
+ */
+public class ConvergenceDetector {
+    public static final int DEFAULT_WINDOW = 20;
+    public static final double DEFAULT_TOLERANCE = 0.02;
+
+    private static final int GINI = 0;
+    private static final int LOWER = 1;
+    private static final int MIDDLE = 2;
+    private static final int UPPER = 3;
+    private static final int MEAN_WEALTH = 4;
+    private static final int MAX_WEALTH = 5; // only averaged, not tested
+    private static final int TESTED = 5;
+
+    private final int window;
+    private final double tolerance;
+    private final boolean padding;
+    private final double[][] samples; // ring buffer of the last window samples of each statistic
+    private int count;
+    private int population;
+    private WealthStatistics steadyState;
+
+    /**
+     * Constructs a detector with the default window and tolerance that pads converged runs.
+     */
+    public ConvergenceDetector() {
+        this(DEFAULT_WINDOW, DEFAULT_TOLERANCE, true);
+    }
+
+    /**
+     * @param window the number of consecutive samples that must be stationary, at least 4
+     * @param tolerance the largest drift allowed over the window
+     * @param padding whether a converged run reports its steady state for the samples it skips
+     * @throws IllegalArgumentException if the window is too short or the tolerance not positive
+     */
+    public ConvergenceDetector(int window, double tolerance, boolean padding) {
+        if (window < 4) {
+            throw new IllegalArgumentException("The window needs at least 4 samples, not " + window);
+        }
+        if (!(tolerance > 0)) {
+            throw new IllegalArgumentException("The tolerance must be positive: " + tolerance);
+        }
+        this.window = window;
+        this.tolerance = tolerance;
+        this.padding = padding;
+        this.samples = new double[MAX_WEALTH + 1][window];
+    }
+
+    /**
+     * Adds the next sample of the run.
+     *
+     * @param stats the statistics of the sample
+     * @return whether the run has converged, counting this sample
+     */
+    public boolean add(WealthStatistics stats) {
+        if (steadyState != null) {
+            return true;
+        }
+        int n = stats.getPopulation();
+        int slot = count % window;
+        samples[GINI][slot] = stats.getGini();
+        samples[LOWER][slot] = (double) stats.getNumLowerClass() / n;
+        samples[MIDDLE][slot] = (double) stats.getNumMiddleClass() / n;
+        samples[UPPER][slot] = (double) stats.getNumUpperClass() / n;
+        samples[MEAN_WEALTH][slot] = stats.getAvgWealth();
+        samples[MAX_WEALTH][slot] = stats.getMaxWealth();
+        population = n;
+        count++;
+
+        if (count < window) {
+            return false;
+        }
+        for (int s = 0; s < TESTED; s++) {
+            if (!isStationary(samples[s], s == MEAN_WEALTH)) {
+                return false;
+            }
+        }
+        steadyState = average();
+        return true;
+    }
+
+    /**
+     * Tests one statistic over the window, oldest sample first.
+     */
+    private boolean isStationary(double[] values, boolean relative) {
+        int first = count % window; // the oldest sample
+        int half = window / 2;
+        double centre = (window - 1) / 2.0;
+        double sum = 0;
+        double firstHalf = 0;
+        double secondHalf = 0;
+        for (int i = 0; i < window; i++) {
+            double value = values[(first + i) % window];
+            if (Double.isNaN(value)) {
+                return false;
+            }
+            sum += value;
+            if (i < half) {
+                firstHalf += value;
+            } else if (i >= window - half) {
+                secondHalf += value;
+            }
+        }
+        double mean = sum / window;
+        double covariance = 0;
+        double variance = 0;
+        for (int i = 0; i < window; i++) {
+            double dx = i - centre;
+            covariance += dx * (values[(first + i) % window] - mean);
+            variance += dx * dx;
+        }
+        double drift = Math.abs(covariance / variance) * (window - 1);
+        double shift = Math.abs(secondHalf - firstHalf) / half;
+        double allowed = relative ? tolerance * Math.abs(mean) : tolerance;
+        return drift <= allowed && shift <= allowed;
+    }
+
+    /**
+     * @return the mean of every statistic over the window, as a sample of the population
+     */
+    private WealthStatistics average() {
+        double[] means = new double[samples.length];
+        for (int s = 0; s < samples.length; s++) {
+            for (double value : samples[s]) {
+                means[s] += value;
+            }
+            means[s] /= window;
+        }
+        int numLower = (int) Math.round(means[LOWER] * population);
+        int numUpper = (int) Math.round(means[UPPER] * population);
+        int numMiddle = Math.max(population - numLower - numUpper, 0);
+        return WealthStatistics.of(population, means[MEAN_WEALTH] * population, means[MAX_WEALTH],
+                means[GINI], numLower, numMiddle, numUpper);
+    }
+
+    //--- Getter functions ---//
+
+    public boolean isConverged() {
+        return steadyState != null;
+    }
+
+    /**
+     * @return the mean statistics over the stationary window, or null if the run has not converged
+     */
+    public WealthStatistics getSteadyState() {
+        return steadyState;
+    }
+
+    public boolean isPadding() {
+        return padding;
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    public double getTolerance() {
+        return tolerance;
+    }
+}
@@ -0,0 +1,243 @@
+package stats;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * ReplicateAggregator summarises the replicates of one case tick by tick while they finish,
+ * without keeping their rows.
+ *
+ * For every tick and statistic it keeps the number of replicates, the running mean and the
+ * running sum of squared deviations, updated with Welford's method, so memory is O(ticks)
+ * however many replicates are added. The class counts also keep exact integer sums, giving
+ * the same floored means as the Python script.
+ *
+ * Replicates may be added from several threads. The floating-point results depend on the
+ * order in which they are added, so adding them in a fixed order makes them reproducible.
+ */
+public class ReplicateAggregator {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int NUM_STATISTICS = Statistic.values().length;
+    // two-sided 95% quantiles of Student's t distribution for 1 to 30 degrees of freedom
+    private static final double[] T_975 = {
+            12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+            2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+            2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042};
+    private static final double Z_975 = 1.959963984540054;
+
+    /**
+     * The statistics of a row, in the order of the CSV columns.
+     */
+    public enum Statistic {
+        TOTAL_WEALTH("totalWealth"),
+        GINI("gini"),
+        NUM_LOWER_CLASS("numLowerClass"),
+        NUM_MIDDLE_CLASS("numMiddleClass"),
+        NUM_UPPER_CLASS("numUpperClass");
+
+        private final String column;
+
+        Statistic(String column) {
+            this.column = column;
+        }
+
+        public String getColumn() {
+            return column;
+        }
+    }
+
+    private int[] ticks = new int[INITIAL_CAPACITY]; // ascending
+    private int[] counts = new int[INITIAL_CAPACITY];
+    private double[][] means = new double[NUM_STATISTICS][INITIAL_CAPACITY];
+    private double[][] squaredDeviations = new double[NUM_STATISTICS][INITIAL_CAPACITY];
+    private long[][] classSums = new long[3][INITIAL_CAPACITY];
+    private int size;
+    private int replicates;
+
+    /**
+     * Adds every row of a finished replicate.
+     *
+     * @param series the statistics recorded by the replicate
+     */
+    public synchronized void add(StatisticsSeries series) {
+        int row = 0;
+        for (int i = 0; i < series.size(); i++) {
+            row = rowOf(series.getTick(i), row);
+            int n = ++counts[row];
+            update(Statistic.TOTAL_WEALTH, row, n, series.getTotalWealth(i));
+            update(Statistic.GINI, row, n, series.getGini(i));
+            update(Statistic.NUM_LOWER_CLASS, row, n, series.getNumLowerClass(i));
+            update(Statistic.NUM_MIDDLE_CLASS, row, n, series.getNumMiddleClass(i));
+            update(Statistic.NUM_UPPER_CLASS, row, n, series.getNumUpperClass(i));
+            classSums[0][row] += series.getNumLowerClass(i);
+            classSums[1][row] += series.getNumMiddleClass(i);
+            classSums[2][row] += series.getNumUpperClass(i);
+        }
+        replicates++;
+    }
+
+    private void update(Statistic statistic, int row, int n, double value) {
+        double[] mean = means[statistic.ordinal()];
+        double delta = value - mean[row];
+        mean[row] += delta / n;
+        squaredDeviations[statistic.ordinal()][row] += delta * (value - mean[row]);
+    }
+
+    /**
+     * Finds the row of a tick, inserting it if no replicate has reached it yet.
+     * Replicates record the same ticks in ascending order, so the row after the
+     * previous one almost always matches.
+     */
+    private int rowOf(int tick, int expected) {
+        if (expected < size && ticks[expected] == tick) {
+            return expected;
+        }
+        int row = Arrays.binarySearch(ticks, 0, size, tick);
+        if (row >= 0) {
+            return row;
+        }
+        row = -row - 1;
+        if (size == ticks.length) {
+            int capacity = size * 2;
+            ticks = Arrays.copyOf(ticks, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            for (int s = 0; s < NUM_STATISTICS; s++) {
+                means[s] = Arrays.copyOf(means[s], capacity);
+                squaredDeviations[s] = Arrays.copyOf(squaredDeviations[s], capacity);
+            }
+            for (int c = 0; c < classSums.length; c++) {
+                classSums[c] = Arrays.copyOf(classSums[c], capacity);
+            }
+        }
+        int tail = size - row;
+        System.arraycopy(ticks, row, ticks, row + 1, tail);
+        System.arraycopy(counts, row, counts, row + 1, tail);
+        for (int s = 0; s < NUM_STATISTICS; s++) {
+            System.arraycopy(means[s], row, means[s], row + 1, tail);
+            System.arraycopy(squaredDeviations[s], row, squaredDeviations[s], row + 1, tail);
+            means[s][row] = 0;
+            squaredDeviations[s][row] = 0;
+        }
+        for (long[] sums : classSums) {
+            System.arraycopy(sums, row, sums, row + 1, tail);
+            sums[row] = 0;
+        }
+        ticks[row] = tick;
+        counts[row] = 0;
+        size++;
+        return row;
+    }
+
+    /**
+     * Writes one row per tick: the columns of the Python script (mean total wealth rounded
+     * to cents, mean gini, floored mean class counts), then the number of replicates, the
+     * sample variance and the half-width of the 95% confidence interval of every statistic.
+     *
+     * @param path the file to create or replace
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void writeProcessed(Path path) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            StringBuilder line = new StringBuilder("tick");
+            for (Statistic statistic : Statistic.values()) {
+                line.append(',').append(statistic.getColumn());
+            }
+            line.append(",replicates");
+            for (Statistic statistic : Statistic.values()) {
+                line.append(',').append(statistic.getColumn()).append("Variance");
+            }
+            for (Statistic statistic : Statistic.values()) {
+                line.append(',').append(statistic.getColumn()).append("Ci95");
+            }
+            writer.write(line.append('\n').toString());
+
+            for (int row = 0; row < size; row++) {
+                line.setLength(0);
+                line.append(ticks[row])
+                        .append(',').append(String.format(Locale.ROOT, "%.2f", getMean(Statistic.TOTAL_WEALTH, row)))
+                        .append(',').append(String.format(Locale.ROOT, "%.6f", getMean(Statistic.GINI, row)));
+                for (long[] sums : classSums) {
+                    line.append(',').append(Math.floorDiv(sums[row], counts[row]));
+                }
+                line.append(',').append(counts[row]);
+                for (Statistic statistic : Statistic.values()) {
+                    line.append(',').append(String.format(Locale.ROOT, "%.6g", getVariance(statistic, row)));
+                }
+                for (Statistic statistic : Statistic.values()) {
+                    line.append(',').append(String.format(Locale.ROOT, "%.6g", getConfidenceHalfWidth(statistic, row)));
+                }
+                writer.write(line.append('\n').toString());
+            }
+        }
+    }
+
+    /**
+     * @param degreesOfFreedom the degrees of freedom, at least 1
+     * @return the 97.5% quantile of Student's t distribution, from a table up to 30 degrees
+     *         of freedom and a Cornish-Fisher expansion around the normal quantile above
+     */
+    static double tQuantile975(int degreesOfFreedom) {
+        if (degreesOfFreedom <= T_975.length) {
+            return T_975[degreesOfFreedom - 1];
+        }
+        double z = Z_975;
+        double z2 = z * z;
+        double v = degreesOfFreedom;
+        return z + z * (z2 + 1) / (4 * v)
+                + z * ((5 * z2 + 16) * z2 + 3) / (96 * v * v)
+                + z * (((3 * z2 + 19) * z2 + 17) * z2 - 15) / (384 * v * v * v);
+    }
+
+    //--- Getter functions ---//
+
+    /**
+     * @return the number of replicates added so far
+     */
+    public synchronized int getReplicates() {
+        return replicates;
+    }
+
+    /**
+     * @return the number of distinct ticks seen so far
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized int getTick(int row) {
+        return ticks[row];
+    }
+
+    public synchronized int getCount(int row) {
+        return counts[row];
+    }
+
+    public synchronized double getMean(Statistic statistic, int row) {
+        return means[statistic.ordinal()][row];
+    }
+
+    /**
+     * @return the sample variance of the statistic at that row, NaN with fewer than two replicates
+     */
+    public synchronized double getVariance(Statistic statistic, int row) {
+        int n = counts[row];
+        return n < 2 ? Double.NaN : squaredDeviations[statistic.ordinal()][row] / (n - 1);
+    }
+
+    /**
+     * @return the half-width of the 95% confidence interval of the mean of the statistic
+     *         at that row, NaN with fewer than two replicates
+     */
+    public synchronized double getConfidenceHalfWidth(Statistic statistic, int row) {
+        int n = counts[row];
+        if (n < 2) {
+            return Double.NaN;
+        }
+        return tQuantile975(n - 1) * Math.sqrt(getVariance(statistic, row) / n);
+    }
+}
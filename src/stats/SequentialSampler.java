@@ -0,0 +1,231 @@
+package stats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * SequentialSampler decides how many replicates a case needs, by running more of them until the
+ * 95% confidence intervals of chosen summaries of the runs are narrow enough.
+ *
+ * Each Target summarises a replicate as one number, e.g. its final or time-averaged Gini
+ * coefficient, and asks for the half-width of the confidence interval of the mean of that
+ * number over the replicates to be at most a given value. The sampler keeps the running mean and
+ * sum of squared deviations of every target with Welford's method, like ReplicateAggregator.
+ *
+ * Replicates are run in batches: first the minimum, then as many as the current variance says are
+ * missing, at most as many again as were run so far and never beyond the maximum. The decision only
+ * depends on the replicates added, so adding them in a fixed order makes it reproducible.
+ */
+public class SequentialSampler {
+    private final List<Target> targets;
+    private final int minReplicates;
+    private final int maxReplicates;
+    private final double[] means;
+    private final double[] squaredDeviations;
+    private int replicates;
+
+    /**
+     * A precision asked of a summary of the replicates.
+     */
+    public static final class Target {
+        private final boolean timeAveraged;
+        private final ReplicateAggregator.Statistic statistic;
+        private final double halfWidth;
+
+        /**
+         * @param timeAveraged whether a replicate is summarised by the mean of its samples rather than its last sample
+         * @param statistic the statistic summarised
+         * @param halfWidth the largest half-width allowed for the 95% confidence interval of the mean
+         * @throws IllegalArgumentException if the half-width is not positive
+         */
+        public Target(boolean timeAveraged, ReplicateAggregator.Statistic statistic, double halfWidth) {
+            if (!(halfWidth > 0)) {
+                throw new IllegalArgumentException("The half-width of a target must be positive: " + halfWidth);
+            }
+            this.timeAveraged = timeAveraged;
+            this.statistic = statistic;
+            this.halfWidth = halfWidth;
+        }
+
+        /**
+         * Parses a target written as "final gini 0.01" or "mean gini 0.005", naming the
+         * statistic by its column in the output files.
+         *
+         * @throws IllegalArgumentException if the text is not a target
+         */
+        public static Target parse(String text) {
+            String[] words = text.trim().split("\\s+");
+            if (words.length != 3 || !(words[0].equals("final") || words[0].equals("mean"))) {
+                throw new IllegalArgumentException("Expected final|mean <statistic> <half-width>: " + text);
+            }
+            ReplicateAggregator.Statistic statistic = null;
+            for (ReplicateAggregator.Statistic candidate : ReplicateAggregator.Statistic.values()) {
+                if (candidate.getColumn().equals(words[1])) {
+                    statistic = candidate;
+                }
+            }
+            if (statistic == null) {
+                throw new IllegalArgumentException("Unknown statistic " + words[1]);
+            }
+            try {
+                return new Target(words[0].equals("mean"), statistic, Double.parseDouble(words[2]));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number: " + words[2]);
+            }
+        }
+
+        /**
+         * @return the summary of a replicate, or NaN if it recorded no sample
+         */
+        double valueOf(StatisticsSeries series) {
+            if (series.size() == 0) {
+                return Double.NaN;
+            }
+            if (!timeAveraged) {
+                return valueOf(series, series.size() - 1);
+            }
+            double sum = 0;
+            for (int row = 0; row < series.size(); row++) {
+                sum += valueOf(series, row);
+            }
+            return sum / series.size();
+        }
+
+        private double valueOf(StatisticsSeries series, int row) {
+            switch (statistic) {
+                case TOTAL_WEALTH: return series.getTotalWealth(row);
+                case GINI: return series.getGini(row);
+                case NUM_LOWER_CLASS: return series.getNumLowerClass(row);
+                case NUM_MIDDLE_CLASS: return series.getNumMiddleClass(row);
+                case NUM_UPPER_CLASS: return series.getNumUpperClass(row);
+                default: throw new IllegalStateException("Unknown statistic " + statistic);
+            }
+        }
+
+        public double getHalfWidth() {
+            return halfWidth;
+        }
+
+        @Override
+        public String toString() {
+            return (timeAveraged ? "mean " : "final ") + statistic.getColumn();
+        }
+    }
+
+    /**
+     * @param targets the precision asked of the replicates, at least one
+     * @param minReplicates the number of replicates run before any decision, at least 2
+     * @param maxReplicates the number of replicates after which no more are run, whatever the precision
+     * @throws IllegalArgumentException if there are no targets or the bounds are invalid
+     */
+    public SequentialSampler(List<Target> targets, int minReplicates, int maxReplicates) {
+        if (targets.isEmpty()) {
+            throw new IllegalArgumentException("A sampler needs at least one target");
+        }
+        if (minReplicates < 2 || maxReplicates < minReplicates) {
+            throw new IllegalArgumentException("Invalid replicate bounds " + minReplicates + "-" + maxReplicates
+                    + ", a confidence interval needs at least 2");
+        }
+        this.targets = Collections.unmodifiableList(new ArrayList<>(targets));
+        this.minReplicates = minReplicates;
+        this.maxReplicates = maxReplicates;
+        this.means = new double[targets.size()];
+        this.squaredDeviations = new double[targets.size()];
+    }
+
+    /**
+     * Adds a finished replicate.
+     *
+     * @param series the statistics recorded by the replicate
+     */
+    public void add(StatisticsSeries series) {
+        replicates++;
+        for (int t = 0; t < means.length; t++) {
+            double value = targets.get(t).valueOf(series);
+            double delta = value - means[t];
+            means[t] += delta / replicates;
+            squaredDeviations[t] += delta * (value - means[t]);
+        }
+    }
+
+    /**
+     * @return the number of replicates to run next, 0 once every target is met or the maximum is reached
+     */
+    public int nextBatch() {
+        if (replicates < minReplicates) {
+            return minReplicates - replicates;
+        }
+        if (replicates >= maxReplicates || isPrecise()) {
+            return 0;
+        }
+        // the smallest n with t * s / sqrt(n) within the target, estimated with the current t and s
+        double t = ReplicateAggregator.tQuantile975(replicates - 1);
+        long needed = replicates + 1;
+        for (int i = 0; i < means.length; i++) {
+            double ratio = t * Math.sqrt(getVariance(i)) / targets.get(i).getHalfWidth();
+            needed = Math.max(needed, (long) Math.ceil(ratio * ratio));
+        }
+        long batch = Math.min(needed - replicates, replicates); // the variance may be overestimated
+        return (int) Math.min(batch, maxReplicates - replicates);
+    }
+
+    /**
+     * @return whether the confidence interval of every target is within its half-width
+     */
+    public boolean isPrecise() {
+        for (int i = 0; i < means.length; i++) {
+            if (!(getHalfWidth(i) <= targets.get(i).getHalfWidth())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private double getVariance(int target) {
+        return replicates < 2 ? Double.NaN : squaredDeviations[target] / (replicates - 1);
+    }
+
+    //--- Getter functions ---//
+
+    public List<Target> getTargets() {
+        return targets;
+    }
+
+    public int getReplicates() {
+        return replicates;
+    }
+
+    public int getMaxReplicates() {
+        return maxReplicates;
+    }
+
+    public double getMean(int target) {
+        return means[target];
+    }
+
+    /**
+     * @return the half-width of the 95% confidence interval of the mean of a target, NaN with fewer than two replicates
+     */
+    public double getHalfWidth(int target) {
+        if (replicates < 2) {
+            return Double.NaN;
+        }
+        return ReplicateAggregator.tQuantile975(replicates - 1) * Math.sqrt(getVariance(target) / replicates);
+    }
+
+    /**
+     * @return every target with its mean and half-width, e.g. "final gini 0.4512 +- 0.0048"
+     */
+    public String describe() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < means.length; i++) {
+            if (i > 0) {
+                text.append(", ");
+            }
+            text.append(String.format(Locale.ROOT, "%s %.4g +- %.2g", targets.get(i), getMean(i), getHalfWidth(i)));
+        }
+        return text.toString();
+    }
+}
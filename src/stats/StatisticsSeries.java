@@ -0,0 +1,129 @@
+package stats;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * StatisticsSeries records the wealth statistics of one run tick after tick, one primitive
+ * array per column: tick, total wealth, Gini coefficient and the number of people in each class.
+ *
+ * Columns grow by doubling, so recording a sample allocates nothing most of the time.
+ */
+public class StatisticsSeries {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] ticks = new int[INITIAL_CAPACITY];
+    private double[] totalWealth = new double[INITIAL_CAPACITY];
+    private double[] gini = new double[INITIAL_CAPACITY];
+    private int[] numLowerClass = new int[INITIAL_CAPACITY];
+    private int[] numMiddleClass = new int[INITIAL_CAPACITY];
+    private int[] numUpperClass = new int[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Appends the statistics of a tick as the next row.
+     *
+     * @param tick the tick at which the statistics were computed
+     * @param stats the statistics of that tick
+     */
+    public void add(int tick, WealthStatistics stats) {
+        add(tick, stats.getTotalWealth(), stats.getGini(),
+                stats.getNumLowerClass(), stats.getNumMiddleClass(), stats.getNumUpperClass());
+    }
+
+    private void add(int tick, double rowTotalWealth, double rowGini,
+                     int rowNumLowerClass, int rowNumMiddleClass, int rowNumUpperClass) {
+        if (size == ticks.length) {
+            int capacity = size * 2;
+            ticks = Arrays.copyOf(ticks, capacity);
+            totalWealth = Arrays.copyOf(totalWealth, capacity);
+            gini = Arrays.copyOf(gini, capacity);
+            numLowerClass = Arrays.copyOf(numLowerClass, capacity);
+            numMiddleClass = Arrays.copyOf(numMiddleClass, capacity);
+            numUpperClass = Arrays.copyOf(numUpperClass, capacity);
+        }
+        ticks[size] = tick;
+        totalWealth[size] = rowTotalWealth;
+        gini[size] = rowGini;
+        numLowerClass[size] = rowNumLowerClass;
+        numMiddleClass[size] = rowNumMiddleClass;
+        numUpperClass[size] = rowNumUpperClass;
+        size++;
+    }
+
+    /**
+     * Writes every row, exactly, e.g. to hand the series of a run to another process.
+     *
+     * @param out the output to write to
+     * @throws IOException if the output cannot be written
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size);
+        for (int row = 0; row < size; row++) {
+            out.writeInt(ticks[row]);
+            out.writeDouble(totalWealth[row]);
+            out.writeDouble(gini[row]);
+            out.writeInt(numLowerClass[row]);
+            out.writeInt(numMiddleClass[row]);
+            out.writeInt(numUpperClass[row]);
+        }
+    }
+
+    /**
+     * Reads a series saved by writeTo.
+     *
+     * @param in the input to read from
+     * @return the saved series
+     * @throws IOException if the input cannot be read or does not hold a series
+     */
+    public static StatisticsSeries readFrom(DataInput in) throws IOException {
+        int rows = in.readInt();
+        if (rows < 0) {
+            throw new IOException("Invalid number of rows: " + rows);
+        }
+        StatisticsSeries series = new StatisticsSeries();
+        for (int row = 0; row < rows; row++) {
+            series.add(in.readInt(), in.readDouble(), in.readDouble(), in.readInt(), in.readInt(), in.readInt());
+        }
+        return series;
+    }
+
+    /**
+     * Removes every row, keeping the allocated columns.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    //--- Getter functions ---//
+
+    public int size() {
+        return size;
+    }
+
+    public int getTick(int row) {
+        return ticks[row];
+    }
+
+    public double getTotalWealth(int row) {
+        return totalWealth[row];
+    }
+
+    public double getGini(int row) {
+        return gini[row];
+    }
+
+    public int getNumLowerClass(int row) {
+        return numLowerClass[row];
+    }
+
+    public int getNumMiddleClass(int row) {
+        return numMiddleClass[row];
+    }
+
+    public int getNumUpperClass(int row) {
+        return numUpperClass[row];
+    }
+}
@@ -0,0 +1,129 @@
+package stats;
+
+import java.util.Arrays;
+
+/**
+ * WealthStatistics is a snapshot of the wealth distribution of a population at one tick.
+ *
+ * It holds the total and maximum wealth, the number of people in each class and the
+ * Gini coefficient. Everything is computed from a primitive wealth array with one sort
+ * and a single pass over the sorted values, so a sample costs O(n log n) instead of the
+ * O(n^2) of comparing every pair of people.
+ */
+public class WealthStatistics {
+    private final int population;
+    private final double totalWealth;
+    private final double maxWealth;
+    private final double gini;
+    private final int numLowerClass;
+    private final int numMiddleClass;
+    private final int numUpperClass;
+
+    private WealthStatistics(int population, double totalWealth, double maxWealth, double gini,
+                             int numLowerClass, int numMiddleClass, int numUpperClass) {
+        this.population = population;
+        this.totalWealth = totalWealth;
+        this.maxWealth = maxWealth;
+        this.gini = gini;
+        this.numLowerClass = numLowerClass;
+        this.numMiddleClass = numMiddleClass;
+        this.numUpperClass = numUpperClass;
+    }
+
+    /**
+     * Computes the statistics of the first n values of the given wealth array.
+     * Those values are sorted in place, so the array is expected to be a scratch buffer.
+     *
+     * The Gini coefficient is the mean absolute difference of all pairs divided by twice the
+     * mean wealth. Over sorted values that pairwise sum reduces to sum((2i - n - 1) * w_i)
+     * for 1-based i, which is accumulated exactly in a long.
+     *
+     * @param wealth the wealth of each person, only the first n entries are used
+     * @param n the number of people
+     * @return the statistics of the population
+     */
+    public static WealthStatistics of(int[] wealth, int n) {
+        Arrays.sort(wealth, 0, n);
+
+        int maxWealth = n > 0 ? wealth[n - 1] : 0;
+        double oneThird = (1.0 / 3) * maxWealth;
+        double twoThirds = (2.0 / 3) * maxWealth;
+
+        long totalWealth = 0;
+        long weightedSum = 0;
+        int numLowerClass = 0;
+        int numMiddleClass = 0;
+        int numUpperClass = 0;
+
+        for (int i = 0; i < n; i++) {
+            int w = wealth[i];
+            totalWealth += w;
+            weightedSum += (long) (2 * i + 1 - n) * w;
+
+            if (w <= oneThird) {
+                numLowerClass++;
+            } else if (w <= twoThirds) {
+                numMiddleClass++;
+            } else {
+                numUpperClass++;
+            }
+        }
+        // An empty or wealthless population has no defined Gini, which stays NaN as before
+        double gini = (double) weightedSum / ((double) n * totalWealth);
+
+        return new WealthStatistics(n, totalWealth, maxWealth, gini,
+                numLowerClass, numMiddleClass, numUpperClass);
+    }
+
+    /**
+     * Creates statistics from values computed elsewhere, e.g. the steady state of a converged run.
+     *
+     * @param population the number of people
+     * @param totalWealth the wealth of all people
+     * @param maxWealth the wealth of the richest person
+     * @param gini the Gini coefficient
+     * @param numLowerClass the number of people in the lower class
+     * @param numMiddleClass the number of people in the middle class
+     * @param numUpperClass the number of people in the upper class
+     * @return the statistics holding those values
+     */
+    public static WealthStatistics of(int population, double totalWealth, double maxWealth, double gini,
+                                      int numLowerClass, int numMiddleClass, int numUpperClass) {
+        return new WealthStatistics(population, totalWealth, maxWealth, gini,
+                numLowerClass, numMiddleClass, numUpperClass);
+    }
+
+    //--- Getter functions ---//
+
+    public int getPopulation() {
+        return population;
+    }
+
+    public double getTotalWealth() {
+        return totalWealth;
+    }
+
+    public double getMaxWealth() {
+        return maxWealth;
+    }
+
+    public double getAvgWealth() {
+        return totalWealth / population;
+    }
+
+    public double getGini() {
+        return gini;
+    }
+
+    public int getNumLowerClass() {
+        return numLowerClass;
+    }
+
+    public int getNumMiddleClass() {
+        return numMiddleClass;
+    }
+
+    public int getNumUpperClass() {
+        return numUpperClass;
+    }
+}
@@ -2,9 +2,6 @@
 
 package util;
 
-import java.util.Random;
-import world.World;
-
 public class Params {
 
     //--- Parameters that can be changed ---//
@@ -18,61 +15,92 @@ public class Params {
     public static final int MAX_VISION = 5; // the furthest possible distance that a person can see
     public static final int PRINT_WRITE_INTERVAL = 10; // interval for printing statistics (every 100 ticks)
     public static final int NUM_GROW = 4; // Number of Grain that grows each time
+    public static final int WORLD_SIZE = 51; // default width and height of the map (in patches)
 
-    // When changing this, also changing tick_interval in process_results.py
     public static final int MAX_TICK = 1000; // the maximum tick number of a simulation.
 
-    //--- Randomizers for Patch and Person classes ---//
+    //--- Randomizers for Grid and Person classes ---//
+    // Each randomizer draws from the random source of the world it is used in
 
     /**
      * Generates a random life expectancy value between MIN_LIFE and MAX_LIFE.
+     * @param random the random source to draw from
+     * @return a randomly generated life expectancy value
+     */
+    public static int lifeExpectancy(RandomSource random) {
+        return lifeExpectancy(random, MIN_LIFE, MAX_LIFE);
+    }
+
+    /**
+     * Generates a random life expectancy value between the given bounds.
+     * @param random the random source to draw from
+     * @param minLife the minimum lifespan
+     * @param maxLife the maximum lifespan
      * @return a randomly generated life expectancy value
      */
-    public static int lifeExpectancy() {
-        Random random = new Random();
-        return (random.nextInt(MAX_LIFE-MIN_LIFE+1)+MIN_LIFE);
+    public static int lifeExpectancy(RandomSource random, int minLife, int maxLife) {
+        return (random.nextInt(maxLife-minLife+1)+minLife);
     }
 
     /**
      * Determines if a patch should be initialized as best land (with maximum grain),
      * based on PERCENT_BEST_LAND probability.
+     * @param random the random source to draw from
+     * @return MAX_GRAIN if selected as best land, otherwise 0
+     */
+    public static int rollBestLand(RandomSource random) {
+        return rollBestLand(random, PERCENT_BEST_LAND);
+    }
+
+    /**
+     * Determines if a patch should be initialized as best land (with maximum grain),
+     * based on the given probability.
+     * @param random the random source to draw from
+     * @param percentBestLand the percentage of patches seeded with the max grain
      * @return MAX_GRAIN if selected as best land, otherwise 0
      */
-    public static int rollBestLand() {
-        Random random = new Random();
-        if ((random.nextFloat()*100)<=PERCENT_BEST_LAND) {
+    public static int rollBestLand(RandomSource random, int percentBestLand) {
+        if ((random.nextFloat()*100)<=percentBestLand) {
             return MAX_GRAIN;
         }
         return 0;
     }
 
     /**
-     * Generates a random coordinate value within the bounds of the world.
-     * @return a random coordinate value within the world
+     * Generates a random metabolism value between 1 and MAX_METABOLISM.
+     * @param random the random source to draw from
+     * @return a randomly generated metabolism value
      */
-    public static int rollCoord() {
-        Random random = new Random();
-        return random.nextInt(World.maxCoord);
-        
+    public static int metabolism(RandomSource random) {
+        return metabolism(random, MAX_METABOLISM);
     }
 
     /**
-     * Generates a random metabolism value between 1 and MAX_METABOLISM.
+     * Generates a random metabolism value between 1 and the given maximum.
+     * @param random the random source to draw from
+     * @param maxMetabolism the maximum metabolism
      * @return a randomly generated metabolism value
      */
-    public static int metabolism() {
-        Random random = new Random();
-        return 1+random.nextInt(Params.MAX_METABOLISM);
-        
+    public static int metabolism(RandomSource random, int maxMetabolism) {
+        return 1+random.nextInt(maxMetabolism);
     }
 
     /**
      * Generates a random vision value between 1 and MAX_VISION.
+     * @param random the random source to draw from
+     * @return a randomly generated vision value
+     */
+    public static int vision(RandomSource random) {
+        return vision(random, MAX_VISION);
+    }
+
+    /**
+     * Generates a random vision value between 1 and the given maximum.
+     * @param random the random source to draw from
+     * @param maxVision the maximum vision
      * @return a randomly generated vision value
      */
-    public static int vision() {
-        Random random = new Random();
-        return 1+random.nextInt(Params.MAX_VISION);
-        
+    public static int vision(RandomSource random, int maxVision) {
+        return 1+random.nextInt(maxVision);
     }
 }
\ No newline at end of file
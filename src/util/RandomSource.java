@@ -0,0 +1,151 @@
+package util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A seeded source of pseudo-random numbers, one per world.
+ *
+ * This follows the SplitMix64 algorithm of java.util.SplittableRandom and draws the
+ * same values for the same seed. Draws never allocate, a run can be replayed exactly
+ * from its seed, and split() derives independent streams, so separate worlds, or
+ * separate parts of one world, never share a generator. Unlike SplittableRandom the
+ * state is held in plain fields so that it can be saved with the rest of a world.
+ *
+ * A RandomSource is not thread-safe; each thread should use its own split.
+ */
+public class RandomSource {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long seed;
+    private final long gamma;
+
+    /**
+     * Constructs a random source from the given seed.
+     * @param seed the initial seed
+     */
+    public RandomSource(long seed) {
+        this(seed, GOLDEN_GAMMA);
+    }
+
+    private RandomSource(long seed, long gamma) {
+        this.seed = seed;
+        this.gamma = gamma;
+    }
+
+    /**
+     * Constructs a new random source that shares no state with this one.
+     * Both this source and the returned one can be used afterwards.
+     * @return a new independent random source
+     */
+    public RandomSource split() {
+        return new RandomSource(nextLong(), mixGamma(nextSeed()));
+    }
+
+    /**
+     * Writes the state of this source, from which readFrom continues the same stream.
+     * @param out the output to write to
+     * @throws IOException if the output cannot be written
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeLong(seed);
+        out.writeLong(gamma);
+    }
+
+    /**
+     * Reads a random source saved by writeTo.
+     * @param in the input to read from
+     * @return a source continuing the stream of the saved one
+     * @throws IOException if the input cannot be read
+     */
+    public static RandomSource readFrom(DataInput in) throws IOException {
+        return new RandomSource(in.readLong(), in.readLong());
+    }
+
+    /**
+     * @return a uniformly distributed long value
+     */
+    public long nextLong() {
+        return mix64(nextSeed());
+    }
+
+    /**
+     * @return a uniformly distributed int value
+     */
+    public int nextInt() {
+        return mix32(nextSeed());
+    }
+
+    /**
+     * Generates a uniformly distributed value between 0 (inclusive) and bound (exclusive).
+     * @param bound the upper bound, must be positive
+     * @return a random value in [0, bound)
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("bound must be positive: " + bound);
+        }
+        int r = mix32(nextSeed());
+        int m = bound - 1;
+        if ((bound & m) == 0) {
+            // bound is a power of two, take the low bits
+            r &= m;
+        } else {
+            // reject values from the incomplete last range to stay uniform
+            for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = mix32(nextSeed()) >>> 1) {
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @return a uniformly distributed value in [0, 1)
+     */
+    public float nextFloat() {
+        return (nextInt() >>> 8) * 0x1.0p-24f;
+    }
+
+    /**
+     * @return a uniformly distributed value in [0, 1)
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Scrambles a value into a well-distributed hash, the same way each draw is produced.
+     * Useful to derive reproducible values from identifiers without keeping any state.
+     * @param value the value to scramble
+     * @return the scrambled value
+     */
+    public static long mix(long value) {
+        return mix64(value);
+    }
+
+    //--- SplitMix64 internals ---//
+
+    private long nextSeed() {
+        return seed += gamma;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static int mix32(long z) {
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        // make sure the gamma has enough bit transitions to mix well
+        int n = Long.bitCount(z ^ (z >>> 1));
+        return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+    }
+}
@@ -0,0 +1,563 @@
+package world;
+
+import stats.StatisticsSeries;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * BinaryRunFile reads and writes the binary output formats of WorldWriter.
+ *
+ * A file is a sequence of independent blocks, one per run, so runs can be appended
+ * just like CSV rows. A block starts with a small big-endian header:
+ *
+ *   int magic, short version, short strategy length, int block length, byte encoding,
+ *   long seed, int people, int grain growth interval, int width, int height,
+ *   int max tick, int number of rows, strategy name in UTF-8
+ *
+ * followed by its columns, each stored contiguously: ticks, total wealth, gini, then the
+ * numbers of the lower, middle and upper class. A run is identified by its seed, which
+ * also replays it. Total wealth and gini are stored as whole numbers of their last decimal
+ * in the CSV, 0.01 and 0.0001, after a byte giving how many of those decimals the run
+ * needs; a run whose values are no such numbers (NaN, for instance) stores that column as
+ * the bits of raw doubles instead. The middle class is not stored if every row has the
+ * people of the run in its three classes.
+ *
+ * The FIXED encoding stores each column as a base value followed by the offset of every row
+ * from it, all rows with the same width of 0, 1, 2, 4 or 8 bytes, the fewest that fit the
+ * range of the column. Reading maps the file into memory and reads any row of any column
+ * straight from the mapping, so nothing is parsed. The PACKED encoding stores each column
+ * as the zigzag varint differences between consecutive rows, so most values take a byte,
+ * which makes files a third smaller again but has to be decoded run by run when read.
+ * Both encodings take any ticks, evenly spaced or not, and a file may mix them.
+ *
+ * Exporting a block as CSV gives exactly the rows WorldWriter would have written.
+ */
+public final class BinaryRunFile {
+    /**
+     * How the columns of a block are stored.
+     */
+    public enum Encoding {
+        /** Fixed-width offsets from a base value, read in place. */
+        FIXED,
+        /** Varint differences between consecutive rows, decoded when read. */
+        PACKED
+    }
+
+    private static final int MAGIC = 0x57445242; // "WDRB"
+    private static final short VERSION = 3;
+    private static final int PREFIX_BYTES = 12; // magic, version, strategy length and block length
+    private static final int HEADER_BYTES = PREFIX_BYTES + 1 + 8 + 6 * 4;
+    private static final int MAX_VARINT_BYTES = 10;
+    private static final int MAX_COLUMN_BYTES = 2 + 8; // kind, width and base of a fixed column
+    private static final int NUM_COLUMNS = 6;
+    private static final int WEALTH_DECIMALS = 2; // as in the CSV rows
+    private static final int GINI_DECIMALS = 4;
+    private static final byte RAW = -1; // kind of a column stored as the bits of raw doubles
+    private static final byte IMPLIED = -2; // kind of a middle class column that is not stored
+    private static final long[] POWERS_OF_TEN = {1, 10, 100, 1_000, 10_000};
+    private static final long WINDOW_BYTES = 1L << 30; // the file is mapped in windows of up to this size
+
+    private BinaryRunFile() {
+    }
+
+    /**
+     * Encodes the statistics of one run as a block of the binary format.
+     *
+     * @param config the parameters of the run
+     * @param strategy the name of the reproduction strategy of the run
+     * @param series the statistics recorded during the run
+     * @param encoding how to store the columns
+     * @return the encoded block
+     * @throws IllegalArgumentException if the strategy name or the block is too long
+     */
+    public static byte[] encode(WorldConfig config, String strategy, StatisticsSeries series, Encoding encoding) {
+        byte[] name = strategy.getBytes(StandardCharsets.UTF_8);
+        if (name.length > 0xFFFF) {
+            throw new IllegalArgumentException("Strategy name is too long: " + name.length + " bytes");
+        }
+        int rows = series.size();
+        // every column takes at most its kind, width and base, and a varint or eight bytes per row
+        long capacity = HEADER_BYTES + name.length + NUM_COLUMNS * (MAX_COLUMN_BYTES + (long) rows * MAX_VARINT_BYTES);
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Run of " + rows + " rows does not fit in a block");
+        }
+
+        ByteBuffer block = ByteBuffer.allocate((int) capacity);
+        block.putInt(MAGIC).putShort(VERSION).putShort((short) name.length).putInt(0); // length once known
+        block.put((byte) encoding.ordinal())
+                .putLong(config.getSeed())
+                .putInt(config.getNumPeople())
+                .putInt(config.getGrainGrowthRate())
+                .putInt(config.getWidth())
+                .putInt(config.getHeight())
+                .putInt(config.getMaxTick())
+                .putInt(rows)
+                .put(name);
+
+        long[] ticks = new long[rows];
+        double[] totalWealth = new double[rows];
+        double[] gini = new double[rows];
+        long[] lower = new long[rows];
+        long[] middle = new long[rows];
+        long[] upper = new long[rows];
+        boolean middleImplied = true;
+        for (int i = 0; i < rows; i++) {
+            ticks[i] = series.getTick(i);
+            totalWealth[i] = series.getTotalWealth(i);
+            gini[i] = series.getGini(i);
+            lower[i] = series.getNumLowerClass(i);
+            middle[i] = series.getNumMiddleClass(i);
+            upper[i] = series.getNumUpperClass(i);
+            middleImplied &= lower[i] + middle[i] + upper[i] == config.getNumPeople();
+        }
+        putColumn(block, encoding, (byte) 0, ticks);
+        putDecimals(block, encoding, totalWealth, WEALTH_DECIMALS);
+        putDecimals(block, encoding, gini, GINI_DECIMALS);
+        putColumn(block, encoding, (byte) 0, lower);
+        if (middleImplied) {
+            block.put(IMPLIED);
+        } else {
+            putColumn(block, encoding, (byte) 0, middle);
+        }
+        putColumn(block, encoding, (byte) 0, upper);
+
+        int length = block.position();
+        block.putInt(8, length);
+        return Arrays.copyOf(block.array(), length);
+    }
+
+    /**
+     * Writes a column as whole numbers of units of its fewest decimals that keep every value
+     * as the CSV writes it, or as the bits of raw doubles if some value is no whole number of units.
+     */
+    private static void putDecimals(ByteBuffer block, Encoding encoding, double[] values, int decimals) {
+        long[] units = new long[values.length];
+        int needed = 0;
+        for (int i = 0; i < values.length; i++) {
+            units[i] = WorldWriter.fixedUnits(values[i], decimals);
+            if (units[i] == WorldWriter.NO_UNITS) {
+                for (int j = 0; j < values.length; j++) {
+                    units[j] = Double.doubleToRawLongBits(values[j]);
+                }
+                putColumn(block, encoding, RAW, units);
+                return;
+            }
+            while (units[i] % POWERS_OF_TEN[decimals - needed] != 0) {
+                needed++;
+            }
+        }
+        for (int i = 0; i < units.length; i++) {
+            units[i] /= POWERS_OF_TEN[decimals - needed];
+        }
+        putColumn(block, encoding, (byte) needed, units);
+    }
+
+    /**
+     * Writes the kind of a column, then its values in the encoding of the block.
+     */
+    private static void putColumn(ByteBuffer block, Encoding encoding, byte kind, long[] values) {
+        block.put(kind);
+        if (encoding == Encoding.PACKED) {
+            long previous = 0;
+            for (long value : values) {
+                putVarint(block, zigzag(value - previous));
+                previous = value;
+            }
+            return;
+        }
+        long base = values.length > 0 ? values[0] : 0;
+        for (long value : values) {
+            base = Math.min(base, value);
+        }
+        long range = 0; // unsigned, so raw double bits spanning the whole long range fit in 8 bytes
+        for (long value : values) {
+            if (Long.compareUnsigned(value - base, range) > 0) {
+                range = value - base;
+            }
+        }
+        int width = widthOf(range);
+        block.put((byte) width).putLong(base);
+        for (long value : values) {
+            long offset = value - base;
+            switch (width) {
+                case 0:
+                    break;
+                case 1:
+                    block.put((byte) offset);
+                    break;
+                case 2:
+                    block.putShort((short) offset);
+                    break;
+                case 4:
+                    block.putInt((int) offset);
+                    break;
+                default:
+                    block.putLong(offset);
+            }
+        }
+    }
+
+    /**
+     * @return the fewest of 0, 1, 2, 4 or 8 bytes that hold an unsigned offset up to range
+     */
+    private static int widthOf(long range) {
+        if (range == 0) {
+            return 0;
+        } else if (Long.compareUnsigned(range, 0xFFL) <= 0) {
+            return 1;
+        } else if (Long.compareUnsigned(range, 0xFFFFL) <= 0) {
+            return 2;
+        } else if (Long.compareUnsigned(range, 0xFFFF_FFFFL) <= 0) {
+            return 4;
+        }
+        return 8;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void putVarint(ByteBuffer block, long value) {
+        while ((value & ~0x7FL) != 0) {
+            block.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        block.put((byte) value);
+    }
+
+    /**
+     * @throws IOException if the block ends inside the varint or it is longer than a long
+     */
+    private static long getVarint(ByteBuffer block) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (!block.hasRemaining()) {
+                throw new IOException("Run ends inside a value");
+            }
+            byte b = block.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Run holds a value longer than a long");
+    }
+
+    /**
+     * Maps a binary file into memory and reads the header of every run of it.
+     * The file is mapped in large windows shared by the runs inside them. The runs of the
+     * FIXED encoding read their rows from the mapping, which stays valid once the file is
+     * closed; the runs of the PACKED encoding are decoded here.
+     *
+     * @param path the binary file
+     * @return the runs of the file, in the order they were written
+     * @throws IOException if the file cannot be read or is not a valid binary run file
+     */
+    public static List<Run> read(Path path) throws IOException {
+        List<Run> runs = new ArrayList<>();
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = file.size();
+            ByteBuffer window = null; // mapping of the file from windowStart on, shared by the runs inside it
+            long windowStart = 0;
+            long position = 0;
+            while (position < size) {
+                if (size - position < PREFIX_BYTES) {
+                    throw new IOException(path + " ends inside the header of a run at byte " + position);
+                }
+                if (window == null || position + PREFIX_BYTES > windowStart + window.capacity()) {
+                    window = file.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size - position, WINDOW_BYTES));
+                    windowStart = position;
+                }
+                int at = (int) (position - windowStart);
+                if (window.getInt(at) != MAGIC || window.getShort(at + 4) != VERSION) {
+                    throw new IOException(path + " has no version " + VERSION + " run at byte " + position);
+                }
+                int length = window.getInt(at + 8);
+                if (length < HEADER_BYTES || position + length > size) {
+                    throw new IOException(path + " has a truncated run at byte " + position);
+                }
+                if (position + length > windowStart + window.capacity()) {
+                    window = file.map(FileChannel.MapMode.READ_ONLY, position,
+                            Math.max(length, Math.min(size - position, WINDOW_BYTES)));
+                    windowStart = position;
+                    at = 0;
+                }
+                runs.add(new Run(window.slice(at, length)));
+                position += length;
+            }
+        }
+        return runs;
+    }
+
+    /**
+     * Writes every run of a binary file as the CSV rows WorldWriter would have written.
+     *
+     * @param binary the binary file to read
+     * @param csv the CSV file to create or replace
+     * @throws IOException if either file cannot be accessed or the binary file is invalid
+     */
+    public static void exportCsv(Path binary, Path csv) throws IOException {
+        List<Run> runs = read(binary);
+        try (BufferedWriter writer = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            StringBuilder rows = new StringBuilder();
+            for (Run run : runs) {
+                rows.setLength(0);
+                run.appendCsv(rows);
+                writer.append(rows);
+            }
+        }
+    }
+
+    /**
+     * Run is the header and columns of one block of a binary file.
+     */
+    public static final class Run {
+        private final Encoding encoding;
+        private final long seed;
+        private final int numPeople;
+        private final int grainGrowthRate;
+        private final int width;
+        private final int height;
+        private final int maxTick;
+        private final int rows;
+        private final String strategy;
+        private final Column ticks;
+        private final Column totalWealth;
+        private final Column gini;
+        private final Column lower;
+        private final Column middle; // of kind IMPLIED if not stored
+        private final Column upper;
+
+        private Run(ByteBuffer block) throws IOException {
+            try {
+                int nameLength = Short.toUnsignedInt(block.getShort(6));
+                block.position(PREFIX_BYTES);
+                byte stored = block.get();
+                if (stored < 0 || stored >= Encoding.values().length) {
+                    throw new IOException("Run has unknown encoding " + stored);
+                }
+                this.encoding = Encoding.values()[stored];
+                this.seed = block.getLong();
+                this.numPeople = block.getInt();
+                this.grainGrowthRate = block.getInt();
+                this.width = block.getInt();
+                this.height = block.getInt();
+                this.maxTick = block.getInt();
+                this.rows = block.getInt();
+                if (rows < 0) {
+                    throw new IOException("Run has " + rows + " rows");
+                }
+                byte[] name = new byte[nameLength];
+                block.get(name);
+                this.strategy = new String(name, StandardCharsets.UTF_8);
+
+                this.ticks = new Column(block, encoding, rows, 0);
+                this.totalWealth = new Column(block, encoding, rows, WEALTH_DECIMALS);
+                this.gini = new Column(block, encoding, rows, GINI_DECIMALS);
+                this.lower = new Column(block, encoding, rows, 0);
+                this.middle = block.get(block.position()) == IMPLIED
+                        ? Column.implied(block) : new Column(block, encoding, rows, 0);
+                this.upper = new Column(block, encoding, rows, 0);
+            } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+                throw new IOException("Run of " + block.capacity() + " bytes ends early", e);
+            }
+            if (block.hasRemaining()) {
+                throw new IOException("Run of " + block.capacity() + " bytes does not match its header");
+            }
+        }
+
+        /**
+         * Appends the rows of this run in the CSV format of WorldWriter.
+         *
+         * @param out the builder to append to
+         */
+        public void appendCsv(StringBuilder out) {
+            for (int i = 0; i < size(); i++) {
+                WorldWriter.appendRow(out, getTick(i), getTotalWealth(i), getGini(i),
+                        getNumLowerClass(i), getNumMiddleClass(i), getNumUpperClass(i));
+            }
+        }
+
+        //--- Getter functions ---//
+
+        public Encoding getEncoding() {
+            return encoding;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        public int getNumPeople() {
+            return numPeople;
+        }
+
+        public int getGrainGrowthRate() {
+            return grainGrowthRate;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public int getMaxTick() {
+            return maxTick;
+        }
+
+        public String getStrategy() {
+            return strategy;
+        }
+
+        public int size() {
+            return rows;
+        }
+
+        public int getTick(int row) {
+            return (int) ticks.get(checkRow(row));
+        }
+
+        public double getTotalWealth(int row) {
+            return totalWealth.getDecimal(checkRow(row));
+        }
+
+        public double getGini(int row) {
+            return gini.getDecimal(checkRow(row));
+        }
+
+        public int getNumLowerClass(int row) {
+            return (int) lower.get(checkRow(row));
+        }
+
+        public int getNumMiddleClass(int row) {
+            if (middle.kind == IMPLIED) {
+                return numPeople - getNumLowerClass(row) - getNumUpperClass(row);
+            }
+            return (int) middle.get(checkRow(row));
+        }
+
+        public int getNumUpperClass(int row) {
+            return (int) upper.get(checkRow(row));
+        }
+
+        private int checkRow(int row) {
+            if (row < 0 || row >= rows) {
+                throw new IndexOutOfBoundsException("Row " + row + " of " + rows);
+            }
+            return row;
+        }
+    }
+
+    /**
+     * Column is one column of a run: where its fixed-width offsets lie in the block,
+     * or its values decoded from varints.
+     */
+    private static final class Column {
+        private final byte kind; // the decimals of the stored units, RAW or IMPLIED
+        private final ByteBuffer block; // of a FIXED column, read in place
+        private final int offset; // of the first row in the block
+        private final int width;
+        private final long base;
+        private final long[] values; // of a PACKED column
+
+        /**
+         * Reads the column at the position of the block and moves past it.
+         *
+         * @param maxDecimals the most decimals the column may store
+         * @throws IOException if the column is not valid
+         */
+        private Column(ByteBuffer block, Encoding encoding, int rows, int maxDecimals) throws IOException {
+            this.kind = block.get();
+            if (kind != RAW && (kind < 0 || kind > maxDecimals) || kind == RAW && maxDecimals == 0) {
+                throw new IOException("Run stores a column of kind " + kind);
+            }
+            if (encoding == Encoding.PACKED) {
+                this.block = null;
+                this.offset = 0;
+                this.width = 0;
+                this.base = 0;
+                this.values = new long[rows];
+                long value = 0;
+                for (int i = 0; i < rows; i++) {
+                    value += unzigzag(getVarint(block));
+                    values[i] = value;
+                }
+                return;
+            }
+            this.width = block.get();
+            if (width != 0 && width != 1 && width != 2 && width != 4 && width != 8) {
+                throw new IOException("Run stores a column " + width + " bytes wide");
+            }
+            this.base = block.getLong();
+            this.block = block;
+            this.offset = block.position();
+            this.values = null;
+            block.position(offset + rows * width); // throws if the column does not fit
+        }
+
+        private Column(byte kind) {
+            this.kind = kind;
+            this.block = null;
+            this.offset = 0;
+            this.width = 0;
+            this.base = 0;
+            this.values = null;
+        }
+
+        /**
+         * Reads the kind byte of a column that is not stored and moves past it.
+         */
+        private static Column implied(ByteBuffer block) {
+            return new Column(block.get());
+        }
+
+        /**
+         * @return the value stored for a row: a whole number, units of the decimals of the column, or raw bits
+         */
+        private long get(int row) {
+            if (values != null) {
+                return values[row];
+            }
+            int at = offset + row * width;
+            switch (width) {
+                case 0:
+                    return base;
+                case 1:
+                    return base + Byte.toUnsignedLong(block.get(at));
+                case 2:
+                    return base + Short.toUnsignedLong(block.getShort(at));
+                case 4:
+                    return base + Integer.toUnsignedLong(block.getInt(at));
+                default:
+                    return base + block.getLong(at);
+            }
+        }
+
+        /**
+         * @return the value of a row of a column of decimals, the double nearest to the decimal,
+         *         which the CSV writes as it is
+         */
+        private double getDecimal(int row) {
+            long value = get(row);
+            return kind == RAW ? Double.longBitsToDouble(value) : value / (double) POWERS_OF_TEN[kind];
+        }
+    }
+}
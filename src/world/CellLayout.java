@@ -0,0 +1,22 @@
+package world;
+
+/**
+ * The order in which the patches of a grid are laid out in memory.
+ *
+ * The layout only changes where the state of a patch is stored, never the result of a
+ * simulation: patches are always visited and chosen by their coordinates.
+ */
+public enum CellLayout {
+    /** Rows one after another, so a patch is stored at y * width + x. */
+    ROW_MAJOR,
+    /**
+     * Square tiles of 16 by 16 patches stored one after another, so patches close to each
+     * other share cache lines in both directions. Width and height are padded to whole tiles.
+     */
+    TILED,
+    /**
+     * Patches ordered along a Z-order (Morton) curve by interleaving the bits of x and y.
+     * The grid is padded to a square whose side is a power of two.
+     */
+    MORTON
+}
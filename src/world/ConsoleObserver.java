@@ -0,0 +1,22 @@
+package world;
+
+import stats.WealthStatistics;
+
+/**
+ * ConsoleObserver prints the start of a run and every sample of its statistics to the
+ * console: total wealth, Gini coefficient and numbers of each class.
+ */
+public class ConsoleObserver implements WorldObserver {
+
+    @Override
+    public void onRunStart(World world) {
+        System.out.println("Starting Wealth Distribution Simulation, " + world.getStrategy() + ", seed " + world.getSeed());
+    }
+
+    @Override
+    public void onSample(World world, int tick, WealthStatistics stats) {
+        System.out.printf("Tick %d: Total Wealth = %.2f, Gini = %.4f, Low = %d, Middle = %d, Upper = %d%n",
+                tick, stats.getTotalWealth(), stats.getGini(),
+                stats.getNumLowerClass(), stats.getNumMiddleClass(), stats.getNumUpperClass());
+    }
+}
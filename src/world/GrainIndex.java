@@ -0,0 +1,271 @@
+package world;
+
+import util.Params;
+
+/**
+ * The GrainIndex answers "which unoccupied patch within Manhattan radius r of a patch has
+ * the most grain" without visiting every patch of the diamond.
+ *
+ * The grid is divided into square tiles and the index keeps an upper bound of the grain in
+ * each tile. A query splits the diamond into blocks, each lying within a single tile, visits
+ * the blocks from the highest bound down, and skips any block whose bound cannot beat the
+ * best patch found so far. Bounds are raised as soon as a patch gains grain; when a patch
+ * loses grain its tile is only marked dirty and its bound is recomputed the next time a
+ * query needs it. Like the grain of the grid, the bounds grow lazily: they are kept as of
+ * the first growth event, and the grain grown over the growth events of the grid since
+ * then is added when a bound is read, so a growth tick costs nothing per tile.
+ *
+ * The answer is the same patch the scan of a person would pick: among the patches with the
+ * most grain, the one with the smallest offset ordered by dx, then dy, and only if it has
+ * strictly more grain than the centre. The radius must not exceed the width or height.
+ */
+public class GrainIndex {
+    public static final int TILE_SIZE = 8; // patches along each side of a tile
+
+    private final Grid grid;
+    private final int tilesX;
+    private final int tilesY;
+    private final double[] bound; // upper bound of the grain in each tile, less the grain grown since event 0
+    private final boolean[] dirty; // whether the bound of a tile may be higher than needed
+
+    // Scratch space for a query, one per thread
+    private final ThreadLocal<Query> queries;
+
+    /**
+     * Constructs the index of the given grid from its current grain.
+     * @param grid the grid to index
+     */
+    public GrainIndex(Grid grid) {
+        this.grid = grid;
+        this.tilesX = (grid.getWidth() + TILE_SIZE - 1) / TILE_SIZE;
+        this.tilesY = (grid.getHeight() + TILE_SIZE - 1) / TILE_SIZE;
+        this.bound = new double[tilesX * tilesY];
+        this.dirty = new boolean[tilesX * tilesY];
+        this.queries = ThreadLocal.withInitial(Query::new);
+        for (int t = 0; t < bound.length; t++) {
+            refresh(t);
+        }
+    }
+
+    //--- Maintenance ---//
+
+    /**
+     * Records that the grain of a patch has been set to the given value.
+     * @param index the index of the patch
+     * @param grain the new grain of the patch
+     */
+    public void update(int index, double grain) {
+        int t = tileOf(grid.xOf(index), grid.yOf(index));
+        double relative = grain - grown();
+        if (relative > bound[t]) {
+            bound[t] = relative;
+        } else {
+            dirty[t] = true;
+        }
+    }
+
+    /**
+     * Recomputes every dirty bound, after which queries do not modify the index
+     * and can run concurrently as long as the grid does not change.
+     */
+    public void refreshAll() {
+        for (int t = 0; t < bound.length; t++) {
+            if (dirty[t]) {
+                refresh(t);
+            }
+        }
+    }
+
+    private void refresh(int t) {
+        int x0 = (t % tilesX) * TILE_SIZE;
+        int y0 = (t / tilesX) * TILE_SIZE;
+        int x1 = Math.min(x0 + TILE_SIZE, grid.getWidth());
+        int y1 = Math.min(y0 + TILE_SIZE, grid.getHeight());
+        double max = Double.NEGATIVE_INFINITY;
+        for (int y = y0; y < y1; y++) {
+            for (int x = x0; x < x1; x++) {
+                max = Math.max(max, grid.getGrain(grid.index(x, y)));
+            }
+        }
+        bound[t] = max - grown();
+        dirty[t] = false;
+    }
+
+    private double boundOf(int t) {
+        if (dirty[t]) {
+            refresh(t);
+        }
+        return bound[t] + grown();
+    }
+
+    /**
+     * @return the grain every patch has grown by over the growth events of the grid so far
+     */
+    private double grown() {
+        return (double) Params.NUM_GROW * grid.getGrowthEvents();
+    }
+
+    private int tileOf(int x, int y) {
+        return (y / TILE_SIZE) * tilesX + x / TILE_SIZE;
+    }
+
+    //--- Queries ---//
+
+    /**
+     * Finds the unoccupied patch with the most grain within the given radius of a patch.
+     *
+     * @param cell the index of the centre patch
+     * @param radius the Manhattan radius to search, at most the width and height of the grid
+     * @return the index of the best patch, or the centre if no patch has more grain than it
+     */
+    public int findBest(int cell, int radius) {
+        Query q = queries.get();
+        int x = grid.xOf(cell);
+        int y = grid.yOf(cell);
+        q.ensureSegments(radius);
+        int numX = Query.segments(q.xSegments, x, radius, grid.getWidth());
+        int numY = Query.segments(q.ySegments, y, radius, grid.getHeight());
+
+        // Collect the blocks of the diamond with the bound of their tile
+        q.ensureBlocks(numX * numY);
+        int numBlocks = 0;
+        for (int i = 0; i < numX; i++) {
+            int[] xs = q.xSegments[i];
+            int minDx = distanceToZero(xs[0], xs[1]);
+            for (int j = 0; j < numY; j++) {
+                int[] ys = q.ySegments[j];
+                if (minDx + distanceToZero(ys[0], ys[1]) > radius) {
+                    continue;
+                }
+                int t = ys[3] / TILE_SIZE * tilesX + xs[3] / TILE_SIZE;
+                q.blockX[numBlocks] = i;
+                q.blockY[numBlocks] = j;
+                q.blockBound[numBlocks] = boundOf(t);
+                numBlocks++;
+            }
+        }
+        q.sortBlocks(numBlocks);
+
+        // Visit blocks from the highest bound until none can beat the best patch
+        double bestGrain = grid.getGrain(cell);
+        int bestCell = cell;
+        boolean found = false;
+        int bestDx = 0;
+        int bestDy = 0;
+        for (int b = 0; b < numBlocks; b++) {
+            double blockBound = q.blockBound[b];
+            if (blockBound < bestGrain || (blockBound == bestGrain && !found)) {
+                break;
+            }
+            int[] xs = q.xSegments[q.blockX[b]];
+            int[] ys = q.ySegments[q.blockY[b]];
+            for (int dx = xs[0]; dx <= xs[1]; dx++) {
+                int reach = radius - Math.abs(dx);
+                int fromDy = Math.max(ys[0], -reach);
+                int toDy = Math.min(ys[1], reach);
+                int px = xs[2] + (dx - xs[0]);
+                for (int dy = fromDy; dy <= toDy; dy++) {
+                    int patch = grid.index(px, ys[2] + (dy - ys[0]));
+                    if ((dx == 0 && dy == 0) || grid.isOccupied(patch)) {
+                        continue;
+                    }
+                    double grain = grid.getGrain(patch);
+                    if (grain > bestGrain
+                            || (found && grain == bestGrain && (dx < bestDx || (dx == bestDx && dy < bestDy)))) {
+                        bestGrain = grain;
+                        bestCell = patch;
+                        bestDx = dx;
+                        bestDy = dy;
+                        found = true;
+                    }
+                }
+            }
+        }
+        return bestCell;
+    }
+
+    private static int distanceToZero(int from, int to) {
+        if (from > 0) {
+            return from;
+        }
+        return to < 0 ? -to : 0;
+    }
+
+    /**
+     * The scratch space of a query: the offset ranges along each axis that fall in a single
+     * tile, and the blocks of the diamond formed by pairing them.
+     */
+    private static class Query {
+        // each segment is {first offset, last offset, coordinate of first offset, tile start coordinate}
+        int[][] xSegments = new int[0][];
+        int[][] ySegments = new int[0][];
+        int[] blockX = new int[0];
+        int[] blockY = new int[0];
+        double[] blockBound = new double[0];
+
+        void ensureSegments(int radius) {
+            // every range holds at least one of the 2r + 1 offsets
+            int needed = 2 * radius + 1;
+            if (xSegments.length < needed) {
+                xSegments = new int[needed][4];
+                ySegments = new int[needed][4];
+            }
+        }
+
+        /**
+         * Splits the offsets from -radius to radius around a coordinate into ranges that
+         * stay within one tile, wrapping around the edges of the grid.
+         * @return the number of ranges written to segments
+         */
+        static int segments(int[][] segments, int centre, int radius, int size) {
+            int count = 0;
+            int d = -radius;
+            while (d <= radius) {
+                int coord = centre + d;
+                if (coord < 0) {
+                    coord += size;
+                } else if (coord >= size) {
+                    coord -= size;
+                }
+                int tileEnd = Math.min((coord / TILE_SIZE + 1) * TILE_SIZE, size) - 1;
+                int last = Math.min(radius, d + (tileEnd - coord));
+                int[] segment = segments[count++];
+                segment[0] = d;
+                segment[1] = last;
+                segment[2] = coord;
+                segment[3] = coord - coord % TILE_SIZE;
+                d = last + 1;
+            }
+            return count;
+        }
+
+        void ensureBlocks(int size) {
+            if (blockX.length < size) {
+                blockX = new int[size];
+                blockY = new int[size];
+                blockBound = new double[size];
+            }
+        }
+
+        /**
+         * Sorts the blocks by decreasing bound with an insertion sort, as there are few of them.
+         */
+        void sortBlocks(int size) {
+            for (int i = 1; i < size; i++) {
+                int bx = blockX[i];
+                int by = blockY[i];
+                double bb = blockBound[i];
+                int j = i - 1;
+                while (j >= 0 && blockBound[j] < bb) {
+                    blockX[j + 1] = blockX[j];
+                    blockY[j + 1] = blockY[j];
+                    blockBound[j + 1] = blockBound[j];
+                    j--;
+                }
+                blockX[j + 1] = bx;
+                blockY[j + 1] = by;
+                blockBound[j + 1] = bb;
+            }
+        }
+    }
+}
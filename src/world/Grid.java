@@ -0,0 +1,651 @@
+package world;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import util.Params;
+import util.RandomSource;
+
+/**
+ * The Grid class holds the state of every patch of land in the simulation world.
+ *
+ * Instead of one object per patch, the grain, maximum grain and occupant of all patches
+ * are stored in flat primitive arrays. The grow sweep and the vision scans of people then
+ * walk contiguous memory rather than chasing references. A patch is identified by its
+ * index in these arrays; where that index lies depends on the CellLayout of the grid, and
+ * the x and y coordinates can be recovered from it. Layouts other than ROW_MAJOR pad the
+ * arrays with cells that are not patches of the world and are never handed out.
+ *
+ * The grid also keeps an index of the patches nobody stands on, updated on every
+ * change of occupant, so a uniformly random empty patch can be drawn in O(1).
+ *
+ * Grain grows lazily. Growing only counts a growth event, and each patch remembers how
+ * many events had happened when its grain was last set; its current grain is worked out
+ * from the events since then whenever it is read. A growth tick therefore costs nothing
+ * per patch, and only the patches people look at are ever touched. As grain is a whole
+ * number once the terrain is set up, this gives exactly the grain of growing every patch.
+ */
+public class Grid {
+    public static final int EMPTY = -1; // occupant value of a patch nobody stands on
+    private static final int TILE_BITS = 4; // TILED layout uses tiles of 16 by 16 patches
+    private static final int TILE = 1 << TILE_BITS;
+
+    // All possible directions to adjacent patches (including diagonals)
+    // Used for finding all valid coordinates
+    private static final int[][] dirs = {
+        {-1, -1}, {-1, 0}, {-1, 1},
+        {0, -1}, {0, 1},
+        {1, -1}, {1, 0}, {1, 1}
+    };
+
+    private final int width;
+    private final int height;
+    private final CellLayout layout;
+    private final int[] xOffset; // index(x, y) is xOffset[x] + yOffset[y]
+    private final int[] yOffset;
+    private final int tilesX; // number of tiles in a row of the TILED layout
+    private double[] grain; // grain when last set; swapped with a scratch buffer during stencil diffusion
+    private final int[] grainSetAt; // number of growth events when the grain of each patch was last set
+    private int growthEvents;
+    private final double[] maxGrain;
+    private boolean terrainShared; // the maximum grain is also used by other grids and must not change
+    private final int[] occupant; // id of the person on each patch, or EMPTY
+    private final int[] freeCells; // the first numFree entries are the empty patches
+    private final int[] freePosition; // position of each patch in freeCells, or -1 if occupied
+    private int numFree;
+    private GrainIndex grainIndex; // built on the first query that needs it
+
+    // Grids with at least this many patches diffuse their rows in parallel
+    private static final int PARALLEL_DIFFUSION_SIZE = 1 << 16;
+
+    /**
+     * Constructs a grid of the given size where every patch may be initialized
+     * with maximum grain based on model parameters. Patches are rolled column by
+     * column whatever the layout, so the terrain only depends on the random source.
+     *
+     * @param width the number of patches along the x-axis
+     * @param height the number of patches along the y-axis
+     * @param layout the order in which patches are stored
+     * @param random the random source used to roll which patches are best land
+     */
+    public Grid(int width, int height, CellLayout layout, RandomSource random) {
+        this(width, height, layout, random, Params.PERCENT_BEST_LAND);
+    }
+
+    /**
+     * Constructs a grid of the given size where the given percentage of patches
+     * is expected to be initialized with maximum grain.
+     *
+     * @param width the number of patches along the x-axis
+     * @param height the number of patches along the y-axis
+     * @param layout the order in which patches are stored
+     * @param random the random source used to roll which patches are best land
+     * @param percentBestLand the percentage of patches seeded with the maximum grain
+     */
+    public Grid(int width, int height, CellLayout layout, RandomSource random, int percentBestLand) {
+        this(width, height, layout, (double[]) null);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                int i = index(x, y);
+                maxGrain[i] = Params.rollBestLand(random, percentBestLand);
+                grain[i] = maxGrain[i];
+            }
+        }
+        freeAllCells();
+    }
+
+    /**
+     * Creates a grid on a terrain that was set up before, typically by another grid
+     * of the same size and layout. The maximum grain is shared with that terrain rather
+     * than copied, and every patch starts with its maximum grain and no occupant.
+     *
+     * @param width the number of patches along the x-axis
+     * @param height the number of patches along the y-axis
+     * @param layout the order in which patches are stored
+     * @param maxGrain the maximum grain of every cell in the storage order of the layout,
+     *                 which must not be changed from now on
+     * @return the new grid
+     * @throws IllegalArgumentException if the terrain does not match the size and layout
+     */
+    public static Grid onTerrain(int width, int height, CellLayout layout, double[] maxGrain) {
+        Grid grid = new Grid(width, height, layout, maxGrain);
+        System.arraycopy(maxGrain, 0, grid.grain, 0, maxGrain.length);
+        grid.terrainShared = true;
+        grid.freeAllCells();
+        return grid;
+    }
+
+    /**
+     * Lists every patch as free, in row order, so spawning does not depend on the layout.
+     */
+    private void freeAllCells() {
+        int k = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                freeCells[k] = index(x, y);
+                freePosition[freeCells[k]] = k;
+                k++;
+            }
+        }
+        this.numFree = width * height;
+    }
+
+    /**
+     * Constructs a grid of the given size without grain, occupants or free patches,
+     * on the given maximum grain, or on a new array of it if null.
+     */
+    private Grid(int width, int height, CellLayout layout, double[] maxGrain) {
+        this.width = width;
+        this.height = height;
+        this.layout = layout;
+        this.xOffset = new int[width];
+        this.yOffset = new int[height];
+        this.tilesX = (width + TILE - 1) / TILE;
+
+        long storage;
+        switch (layout) {
+            case TILED:
+                int tilesY = (height + TILE - 1) / TILE;
+                for (int x = 0; x < width; x++) {
+                    xOffset[x] = (x >> TILE_BITS) * TILE * TILE + (x & (TILE - 1));
+                }
+                for (int y = 0; y < height; y++) {
+                    yOffset[y] = (y >> TILE_BITS) * TILE * TILE * tilesX + (y & (TILE - 1)) * TILE;
+                }
+                storage = (long) tilesX * tilesY * TILE * TILE;
+                break;
+            case MORTON:
+                int side = Integer.highestOneBit(Math.max(Math.max(width, height) - 1, 1)) << 1;
+                for (int x = 0; x < width; x++) {
+                    xOffset[x] = spreadBits(x);
+                }
+                for (int y = 0; y < height; y++) {
+                    yOffset[y] = spreadBits(y) << 1;
+                }
+                storage = (long) side * side;
+                break;
+            default:
+                for (int x = 0; x < width; x++) {
+                    xOffset[x] = x;
+                }
+                for (int y = 0; y < height; y++) {
+                    yOffset[y] = y * width;
+                }
+                storage = (long) width * height;
+        }
+        if (storage > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("A " + width + "x" + height + " grid does not fit the " + layout + " layout");
+        }
+
+        this.grain = new double[(int) storage];
+        if (maxGrain != null && maxGrain.length != storage) {
+            throw new IllegalArgumentException("A terrain of " + maxGrain.length + " cells does not fit a "
+                    + width + "x" + height + " grid in the " + layout + " layout");
+        }
+        this.maxGrain = maxGrain != null ? maxGrain : new double[(int) storage];
+        this.grainSetAt = new int[(int) storage];
+        this.occupant = new int[(int) storage];
+        this.freeCells = new int[width * height];
+        this.freePosition = new int[(int) storage];
+
+        Arrays.fill(occupant, EMPTY);
+        Arrays.fill(freePosition, -1);
+    }
+
+    /**
+     * Reads a grid saved by writeTo. The saved grid may have used another layout.
+     *
+     * @param in the input to read from
+     * @param width the number of patches along the x-axis of the saved grid
+     * @param height the number of patches along the y-axis of the saved grid
+     * @param layout the order in which patches are stored in the restored grid
+     * @return the restored grid
+     * @throws IOException if the input cannot be read or does not hold a valid grid
+     */
+    public static Grid readFrom(DataInput in, int width, int height, CellLayout layout) throws IOException {
+        Grid grid = new Grid(width, height, layout, (double[]) null);
+        for (int k = 0; k < grid.size(); k++) {
+            int i = grid.fromRowMajor(k);
+            grid.grain[i] = in.readDouble();
+            grid.maxGrain[i] = in.readDouble();
+            grid.occupant[i] = in.readInt();
+        }
+        grid.numFree = in.readInt();
+        if (grid.numFree < 0 || grid.numFree > grid.size()) {
+            throw new IOException("Invalid number of free patches: " + grid.numFree);
+        }
+        for (int k = 0; k < grid.numFree; k++) {
+            int i = grid.readCell(in);
+            if (grid.occupant[i] != EMPTY || grid.freePosition[i] != -1) {
+                throw new IOException("Patch " + grid.toRowMajor(i) + " cannot be free");
+            }
+            grid.freeCells[k] = i;
+            grid.freePosition[i] = k;
+        }
+        return grid;
+    }
+
+    /**
+     * Writes the current grain, maximum grain and occupant of every patch in row order,
+     * followed by the free patches in the order they are drawn from, so that a restored
+     * grid continues exactly like this one whatever its layout.
+     *
+     * @param out the output to write to
+     * @throws IOException if the output cannot be written
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        for (int k = 0; k < size(); k++) {
+            int i = fromRowMajor(k);
+            out.writeDouble(getGrain(i));
+            out.writeDouble(maxGrain[i]);
+            out.writeInt(occupant[i]);
+        }
+        out.writeInt(numFree);
+        for (int k = 0; k < numFree; k++) {
+            writeCell(out, freeCells[k]);
+        }
+    }
+
+    /**
+     * Spreads the bits of a coordinate to the even bit positions, for the MORTON layout.
+     */
+    private static int spreadBits(int v) {
+        v = (v | (v << 8)) & 0x00FF00FF;
+        v = (v | (v << 4)) & 0x0F0F0F0F;
+        v = (v | (v << 2)) & 0x33333333;
+        v = (v | (v << 1)) & 0x55555555;
+        return v;
+    }
+
+    /**
+     * Gathers the even bits of an index back into a coordinate, for the MORTON layout.
+     */
+    private static int compactBits(int v) {
+        v &= 0x55555555;
+        v = (v | (v >>> 1)) & 0x33333333;
+        v = (v | (v >>> 2)) & 0x0F0F0F0F;
+        v = (v | (v >>> 4)) & 0x00FF00FF;
+        v = (v | (v >>> 8)) & 0x0000FFFF;
+        return v;
+    }
+
+    //--- Setup functions ---//
+
+    /**
+     * Diffuses the grain of every patch the given number of times.
+     * Each patch distributes a quarter of its grain to all valid neighbouring patches
+     * equally. If some neighbours are invalid, their share of the grain returns to the
+     * patch itself. Patches never hold more than the maximum grain.
+     *
+     * By default all patches diffuse at once: every pass reads the grain of the previous
+     * pass from one buffer and writes the new grain to another, so the result does not
+     * depend on the order of patches and rows are computed in parallel on large grids.
+     * The sequential mode instead diffuses one patch at a time in column order, each
+     * patch seeing the grain already moved by the patches before it, as this model
+     * originally did.
+     *
+     * @param passes the number of times grain is diffused
+     * @param sequential whether to reproduce the original patch-by-patch diffusion
+     */
+    public void diffuse(int passes, boolean sequential) {
+        grainIndex = null;
+        materializeGrain();
+        if (sequential) {
+            for (int k = 0; k < passes; k++) {
+                diffuse();
+            }
+            return;
+        }
+
+        double[] next = new double[grain.length];
+        boolean parallel = size() >= PARALLEL_DIFFUSION_SIZE;
+        for (int k = 0; k < passes; k++) {
+            double[] current = grain;
+            double[] target = next;
+            if (parallel) {
+                IntStream.range(0, height).parallel().forEach(y -> diffuseRow(y, current, target));
+            } else {
+                for (int y = 0; y < height; y++) {
+                    diffuseRow(y, current, target);
+                }
+            }
+            next = current;
+            grain = target;
+        }
+    }
+
+    /**
+     * Computes the diffused grain of one row of patches from the grain of the previous pass.
+     * The grain of the column of three patches to the left, centre and right of each patch
+     * is carried along the row, so every patch is read once per row it is a neighbour of.
+     * Neighbours outside the grid count as holding no grain, and the shares meant for them
+     * stay with the patch.
+     */
+    private void diffuseRow(int y, double[] current, double[] target) {
+        boolean hasUp = y > 0;
+        boolean hasDown = y < height - 1;
+        int rowUp = hasUp ? yOffset[y - 1] : 0;
+        int row = yOffset[y];
+        int rowDown = hasDown ? yOffset[y + 1] : 0;
+        int numRows = 1 + (hasUp ? 1 : 0) + (hasDown ? 1 : 0);
+
+        // grain of the columns left of, at and right of the current patch
+        double left = 0;
+        double up = hasUp ? current[rowUp + xOffset[0]] : 0;
+        double mid = current[row + xOffset[0]];
+        double down = hasDown ? current[rowDown + xOffset[0]] : 0;
+        for (int x = 0; x < width; x++) {
+            double right = 0;
+            double nextUp = 0;
+            double nextMid = 0;
+            double nextDown = 0;
+            if (x + 1 < width) {
+                int nx = xOffset[x + 1];
+                nextUp = hasUp ? current[rowUp + nx] : 0;
+                nextMid = current[row + nx];
+                nextDown = hasDown ? current[rowDown + nx] : 0;
+                right = nextUp + nextMid + nextDown;
+            }
+
+            // each neighbour gives away an eighth of a quarter of its grain
+            double received = (left + up + down + right) / 4 / 8;
+            int numColumns = 1 + (x > 0 ? 1 : 0) + (x + 1 < width ? 1 : 0);
+            int numValid = numColumns * numRows - 1;
+
+            double diffuseNum = mid/4;
+            double share = diffuseNum/8;
+            double kept = mid - diffuseNum + (8-numValid)*share;
+            target[row + xOffset[x]] = Math.min(Params.MAX_GRAIN, kept + received);
+
+            left = up + mid + down;
+            up = nextUp;
+            mid = nextMid;
+            down = nextDown;
+        }
+    }
+
+    /**
+     * Diffuses the grain of every patch, one patch at a time in column order.
+     */
+    private void diffuse() {
+        grainIndex = null;
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                diffusePatch(x, y);
+            }
+        }
+    }
+
+    private void diffusePatch(int x, int y) {
+        int i = index(x, y);
+        if (grain[i] != 0) {
+            double diffuseNum = grain[i]/4;
+            double share = diffuseNum/8; // diffusal takes the shared fraction and shares it evenly between all coordinates
+            int numValid = 0;
+            grain[i] = grain[i]-diffuseNum;
+
+            // updates grain amount of valid neighbours and makes sure it does not exceed the maximum
+            for (int[] dir : dirs) {
+                int nx = x + dir[0];
+                int ny = y + dir[1];
+                if (isValidCoord(nx, ny)) {
+                    int n = index(nx, ny);
+                    grain[n] = Math.min(Params.MAX_GRAIN, grain[n]+share);
+                    numValid++;
+                }
+            }
+
+            // if there are less than 8 valid neighbours, the excess shares go back to the original patch
+            grain[i] = grain[i] + (8-numValid)*share;
+        }
+    }
+
+    /**
+     * Rounds the grain of every patch down to the nearest whole number
+     * and sets it as the maximum grain of that patch.
+     */
+    public void floorGrainToMax() {
+        if (terrainShared) {
+            throw new IllegalStateException("The terrain of this grid is shared and cannot change");
+        }
+        grainIndex = null;
+        materializeGrain();
+        for (int i = 0; i < grain.length; i++) {
+            grain[i] = Math.floor(grain[i]);
+            maxGrain[i] = grain[i];
+        }
+    }
+
+    /**
+     * Hands out the maximum grain of every cell in storage order, so that other grids
+     * can be created on the same terrain with onTerrain. From then on the terrain of
+     * this grid can no longer change.
+     *
+     * @return the maximum grain of this grid, which must not be modified
+     */
+    double[] shareTerrain() {
+        terrainShared = true;
+        return maxGrain;
+    }
+
+    /**
+     * Brings the stored grain of every patch up to date with all growth events,
+     * for the operations that work on the stored grain directly.
+     */
+    public void materializeGrain() {
+        for (int i = 0; i < grain.length; i++) {
+            if (grainSetAt[i] != growthEvents) {
+                grain[i] = getGrain(i);
+                grainSetAt[i] = growthEvents;
+            }
+        }
+    }
+
+    //--- Functions while model is running ---//
+
+    /**
+     * Grows the grain of every patch by the number of grain that grows each time.
+     * Only the growth event is recorded; the grain of each patch catches up when read.
+     */
+    public void grow() {
+        growthEvents++;
+    }
+
+    /**
+     * Draws a patch uniformly at random among the patches nobody stands on.
+     *
+     * @param random the random source to draw from
+     * @return the index of an empty patch
+     * @throws IllegalStateException if every patch is occupied
+     */
+    public int randomFreeCell(RandomSource random) {
+        if (numFree == 0) {
+            throw new IllegalStateException("No empty patch left in the " + width + "x" + height + " grid");
+        }
+        return freeCells[random.nextInt(numFree)];
+    }
+
+    /**
+     * Checks if the given coordinates are within the bounds of the grid.
+     * @param x the x-coordinate to check
+     * @param y the y-coordinate to check
+     * @return true if the coordinates are valid; false otherwise
+     */
+    public boolean isValidCoord(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height;
+    }
+
+    /**
+     * @param x the x-coordinate of a patch
+     * @param y the y-coordinate of a patch
+     * @return the index of the patch
+     */
+    public int index(int x, int y) {
+        return xOffset[x] + yOffset[y];
+    }
+
+    /**
+     * @param index the index of a patch
+     * @return the position of the patch when patches are numbered row by row
+     */
+    public int toRowMajor(int index) {
+        return yOf(index) * width + xOf(index);
+    }
+
+    /**
+     * @param position the position of a patch when patches are numbered row by row
+     * @return the index of the patch
+     */
+    public int fromRowMajor(int position) {
+        return index(position % width, position / width);
+    }
+
+    /**
+     * Writes a patch by its row-major position, which does not depend on the layout.
+     *
+     * @param out the output to write to
+     * @param index the index of the patch
+     * @throws IOException if the output cannot be written
+     */
+    public void writeCell(DataOutput out, int index) throws IOException {
+        out.writeInt(toRowMajor(index));
+    }
+
+    /**
+     * Reads a patch saved by writeCell.
+     *
+     * @param in the input to read from
+     * @return the index of the patch in this grid
+     * @throws IOException if the input cannot be read or the patch is outside the grid
+     */
+    public int readCell(DataInput in) throws IOException {
+        int position = in.readInt();
+        if (position < 0 || position >= size()) {
+            throw new IOException("Patch " + position + " is outside the " + width + "x" + height + " grid");
+        }
+        return fromRowMajor(position);
+    }
+
+    public int xOf(int index) {
+        switch (layout) {
+            case TILED:
+                return (index >> (2 * TILE_BITS)) % tilesX * TILE + (index & (TILE - 1));
+            case MORTON:
+                return compactBits(index);
+            default:
+                return index % width;
+        }
+    }
+
+    public int yOf(int index) {
+        switch (layout) {
+            case TILED:
+                return (index >> (2 * TILE_BITS)) / tilesX * TILE + ((index >> TILE_BITS) & (TILE - 1));
+            case MORTON:
+                return compactBits(index >>> 1);
+            default:
+                return index / width;
+        }
+    }
+
+    //--- Getter and setter functions ---//
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the length of the arrays backing the grid, including padding
+     */
+    public int getStorageSize() {
+        return grain.length;
+    }
+
+    /**
+     * @return the number of patches in the grid, not counting padding
+     */
+    public int size() {
+        return width * height;
+    }
+
+    public CellLayout getLayout() {
+        return layout;
+    }
+
+    public double getGrain(int index) {
+        return grain[index] + (double) Params.NUM_GROW * (growthEvents - grainSetAt[index]);
+    }
+
+    public void setGrain(int index, double value) {
+        grain[index] = value;
+        grainSetAt[index] = growthEvents;
+        if (grainIndex != null) {
+            grainIndex.update(index, value);
+        }
+    }
+
+    /**
+     * @return the number of growth events so far, the epoch from which grain is worked out
+     */
+    int getGrowthEvents() {
+        return growthEvents;
+    }
+
+    public boolean hasGrainIndex() {
+        return grainIndex != null;
+    }
+
+    /**
+     * Returns the index of the grain of this grid, building it on first use.
+     * From then on it is kept up to date by every change of grain.
+     * @return the grain index of this grid
+     */
+    public GrainIndex getGrainIndex() {
+        if (grainIndex == null) {
+            grainIndex = new GrainIndex(this);
+        }
+        return grainIndex;
+    }
+
+    public double getMaxGrain(int index) {
+        return maxGrain[index];
+    }
+
+    public boolean isOccupied(int index) {
+        return occupant[index] != EMPTY;
+    }
+
+    public int getOccupant(int index) {
+        return occupant[index];
+    }
+
+    public int getNumFree() {
+        return numFree;
+    }
+
+    public void setOccupant(int index, int personId) {
+        if (occupant[index] == EMPTY) {
+            // move the last free patch into the position of this one
+            int position = freePosition[index];
+            int last = freeCells[--numFree];
+            freeCells[position] = last;
+            freePosition[last] = position;
+            freePosition[index] = -1;
+        }
+        occupant[index] = personId;
+    }
+
+    public void clearOccupant(int index) {
+        if (occupant[index] != EMPTY) {
+            freeCells[numFree] = index;
+            freePosition[index] = numFree++;
+        }
+        occupant[index] = EMPTY;
+    }
+}
@@ -0,0 +1,27 @@
+package world;
+
+/**
+ * OutputFormat is the file format in which a WorldWriter stores the statistics of its runs.
+ */
+public enum OutputFormat {
+    /** Text rows of "tick, total wealth, gini, lower, middle, upper", read by the Python scripts. */
+    CSV(".csv"),
+    /** Fixed-width columns in blocks of one run each, read in place by BinaryRunFile. */
+    BINARY(".bin"),
+    /** Like BINARY, but with varint-delta columns that take less space and are decoded when read. */
+    PACKED(".bin");
+
+    private final String extension;
+
+    OutputFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * @param baseName the name of the output file without extension
+     * @return the name of the output file in this format
+     */
+    public String fileName(String baseName) {
+        return baseName + extension;
+    }
+}
@@ -0,0 +1,184 @@
+package world;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import metrics.Metrics;
+import metrics.Phase;
+import metrics.TickProbe;
+import person.Person;
+import person.strategy.ReproductionStrategy;
+import util.RandomSource;
+
+/**
+ * The ParallelTicker advances a single world by one tick using several threads.
+ *
+ * A tick has two phases. First, every person proposes the patch they would move to, looking
+ * at the world as it was at the start of the tick. These proposals only read the world, so
+ * the grid is cut into horizontal stripes and the people of each stripe are handled by a
+ * separate task. Then, on the calling thread, people claiming the same patch are resolved by
+ * a priority drawn from the seed, the tick and their id, the winners move, and everyone
+ * harvests and reproduces in slot order.
+ *
+ * Nothing depends on which thread handled which stripe, so a seed gives the same run for any
+ * number of threads. It is not the same run as the sequential tick, where each person sees
+ * the moves of the people before them.
+ */
+class ParallelTicker {
+    private static final int STRIPES_PER_THREAD = 4; // more stripes than threads to balance the load
+
+    private final World world;
+    private final int numStripes;
+    private final ExecutorService pool;
+
+    private int[] proposals = new int[0]; // patch proposed by the person in each slot
+    private long[] priorities = new long[0]; // priority of the person in each slot this tick
+    private int[] stripeSlots = new int[0]; // slots grouped by stripe
+    private final int[] stripeStart; // first position of each stripe in stripeSlots
+    private final int[] claimant; // slot currently winning each patch, or -1
+
+    /**
+     * Constructs a ticker for the given world running on the given number of threads.
+     *
+     * @param world the world to advance
+     * @param threads the number of threads proposing moves
+     */
+    ParallelTicker(World world, int threads) {
+        this.world = world;
+        this.numStripes = Math.min(threads * STRIPES_PER_THREAD, world.getGrid().getHeight());
+        this.stripeStart = new int[numStripes + 1];
+        this.claimant = new int[world.getGrid().getStorageSize()];
+        Arrays.fill(claimant, -1);
+        this.pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "tick-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Advances every person alive at the start of the tick.
+     *
+     * @param tick the current tick, part of the priority of each person
+     * @param strategy the reproduction strategy of the world
+     * @param probe the probe timing the phases of the tick, or null if metrics are off
+     */
+    void tick(int tick, ReproductionStrategy strategy, TickProbe probe) {
+        Population people = world.getPopulation();
+        Grid grid = world.getGrid();
+        int numAgents = people.size();
+        if (proposals.length < numAgents) {
+            proposals = new int[numAgents];
+            priorities = new long[numAgents];
+            stripeSlots = new int[numAgents];
+        }
+        if (grid.hasGrainIndex()) {
+            // queries must not refresh tiles while running concurrently
+            grid.getGrainIndex().refreshAll();
+        }
+
+        groupByStripe(people, grid, numAgents);
+        proposeMoves(people, tick);
+
+        // Resolve patches claimed by several people; ties go to the lower slot
+        for (int slot = 0; slot < numAgents; slot++) {
+            int target = proposals[slot];
+            if (target != people.get(slot).getCell()) {
+                int current = claimant[target];
+                if (current == -1 || priorities[slot] > priorities[current]) {
+                    claimant[target] = slot;
+                }
+            }
+        }
+        for (int slot = 0; slot < numAgents; slot++) {
+            int target = proposals[slot];
+            if (claimant[target] == slot) {
+                people.get(slot).moveTo(target);
+            }
+        }
+        for (int slot = 0; slot < numAgents; slot++) {
+            claimant[proposals[slot]] = -1;
+        }
+
+        if (Metrics.ENABLED) {
+            probe.lap(Phase.MOVE);
+            for (int slot = 0; slot < numAgents; slot++) {
+                Person person = people.get(slot);
+                person.harvest();
+                probe.lap(Phase.HARVEST);
+                strategy.reproduce(person, world);
+                probe.lap(Phase.REPRODUCE);
+            }
+            return;
+        }
+        for (int slot = 0; slot < numAgents; slot++) {
+            people.get(slot).harvestAndReproduce(strategy);
+        }
+    }
+
+    /**
+     * Sorts the slots of all people by the stripe of the grid they stand in.
+     */
+    private void groupByStripe(Population people, Grid grid, int numAgents) {
+        int height = grid.getHeight();
+        Arrays.fill(stripeStart, 0);
+        for (int slot = 0; slot < numAgents; slot++) {
+            stripeStart[stripeOf(grid.yOf(people.get(slot).getCell()), height) + 1]++;
+        }
+        for (int s = 0; s < numStripes; s++) {
+            stripeStart[s + 1] += stripeStart[s];
+        }
+        int[] next = Arrays.copyOf(stripeStart, numStripes);
+        for (int slot = 0; slot < numAgents; slot++) {
+            int stripe = stripeOf(grid.yOf(people.get(slot).getCell()), height);
+            stripeSlots[next[stripe]++] = slot;
+        }
+    }
+
+    private int stripeOf(int y, int height) {
+        return (int) ((long) y * numStripes / height);
+    }
+
+    /**
+     * Lets the people of each stripe propose their moves on the pool.
+     */
+    private void proposeMoves(Population people, int tick) {
+        long tickSeed = world.getSeed() + RandomSource.mix(tick);
+        List<Callable<Void>> tasks = new ArrayList<>(numStripes);
+        for (int s = 0; s < numStripes; s++) {
+            int from = stripeStart[s];
+            int to = stripeStart[s + 1];
+            tasks.add(() -> {
+                for (int k = from; k < to; k++) {
+                    int slot = stripeSlots[k];
+                    Person person = people.get(slot);
+                    proposals[slot] = person.proposeMove();
+                    priorities[slot] = RandomSource.mix(tickSeed + person.getId());
+                }
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> future : pool.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while proposing moves", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Proposing moves failed", e.getCause());
+        }
+    }
+
+    /**
+     * Stops the threads of this ticker.
+     */
+    void shutdown() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,122 @@
+package world;
+
+import java.util.Arrays;
+import person.Person;
+
+/**
+ * The Population class holds all people alive in a world in a dense array.
+ *
+ * Every person knows the slot they occupy, so adding, removing and replacing a
+ * person are all O(1). Replacing a dead person with a newborn puts the newborn in
+ * the same slot, which keeps iteration by slot stable while a tick is in progress:
+ * looping up to the size at the start of the tick visits every person alive at that
+ * point exactly once, and people born during the tick are not visited until the next.
+ *
+ * The population of a world reports every replacement and removal to the observers of the
+ * world as deaths and births.
+ */
+public class Population {
+    private static final int NO_SLOT = -1;
+
+    private Person[] people;
+    private int size;
+    private final World world; // notified of deaths and births, or null
+
+    /**
+     * Constructs an empty population with room for the given number of people.
+     * @param capacity the initial capacity, the population grows beyond it as needed
+     */
+    public Population(int capacity) {
+        this(capacity, null);
+    }
+
+    /**
+     * Constructs the empty population of a world.
+     * @param capacity the initial capacity, the population grows beyond it as needed
+     * @param world the world reporting the deaths and births of this population
+     */
+    Population(int capacity, World world) {
+        this.people = new Person[Math.max(capacity, 1)];
+        this.world = world;
+    }
+
+    /**
+     * Adds a person in the slot after the last one.
+     * @param person the person to add
+     */
+    public void add(Person person) {
+        if (size == people.length) {
+            people = Arrays.copyOf(people, size * 2);
+        }
+        people[size] = person;
+        person.setSlot(size);
+        size++;
+    }
+
+    /**
+     * Removes a person by moving the last person into their slot.
+     * This changes the slot of the last person, so people born and dying in the
+     * same tick should use replace instead.
+     * @param person the person to remove
+     */
+    public void remove(Person person) {
+        int slot = checkSlot(person);
+        size--;
+        Person last = people[size];
+        people[slot] = last;
+        last.setSlot(slot);
+        people[size] = null;
+        person.setSlot(NO_SLOT);
+        if (world != null) {
+            world.reportRemoved(person);
+        }
+    }
+
+    /**
+     * Puts a newborn in the slot of a person who is leaving the population.
+     * @param dead the person to remove
+     * @param newborn the person taking their place
+     */
+    public void replace(Person dead, Person newborn) {
+        int slot = checkSlot(dead);
+        people[slot] = newborn;
+        newborn.setSlot(slot);
+        dead.setSlot(NO_SLOT);
+        if (world != null) {
+            world.reportReplaced(dead, newborn);
+        }
+    }
+
+    /**
+     * Removes all people.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            people[i].setSlot(NO_SLOT);
+            people[i] = null;
+        }
+        size = 0;
+    }
+
+    private int checkSlot(Person person) {
+        int slot = person.getSlot();
+        if (slot < 0 || slot >= size || people[slot] != person) {
+            throw new IllegalArgumentException("Person " + person.getId() + " is not in this population");
+        }
+        return slot;
+    }
+
+    //--- Getter functions ---//
+
+    /**
+     * @param slot a slot between 0 and size() - 1
+     * @return the person in the given slot
+     */
+    public Person get(int slot) {
+        return people[slot];
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,276 @@
+package world;
+
+import metrics.Metrics;
+import metrics.Phase;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * ResultSink appends batches of results, CSV rows or binary run blocks, to files in an
+ * output directory without making the simulation wait for the disk.
+ *
+ * Every file gets its own channel: a bounded queue of batches drained by a background
+ * writer thread that owns the open file. Submitting a batch only copies it into the
+ * queue, and blocks only if that file has fallen a whole queue behind, without holding up
+ * producers of other files. Batches a thread submits to a file are appended in the order
+ * it submitted them.
+ *
+ * Closing the sink waits for every queued batch to be written and closes every file,
+ * so it is meant to be used with try-with-resources around one sweep.
+ */
+public class ResultSink implements AutoCloseable {
+    private static final int DEFAULT_QUEUE_CAPACITY = 8; // batches waiting per file before submit blocks
+
+    private final Path directory;
+    private final int queueCapacity;
+    private final Map<String, Channel> channels = new HashMap<>();
+    private final List<Channel> openOrder = new ArrayList<>();
+    private int submitting; // producers queueing a batch outside the lock, which close waits for
+    private boolean closed;
+
+    /**
+     * Constructs a sink writing into the given directory, which is created if needed.
+     *
+     * @param directory the directory of the output files
+     * @throws UncheckedIOException if the directory cannot be created
+     */
+    public ResultSink(Path directory) {
+        this(directory, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Constructs a sink writing into the given directory, which is created if needed.
+     *
+     * @param directory the directory of the output files
+     * @param queueCapacity the number of batches a file may have pending before submit blocks
+     * @throws IllegalArgumentException if the capacity is not positive
+     * @throws UncheckedIOException if the directory cannot be created
+     */
+    public ResultSink(Path directory, int queueCapacity) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queueCapacity must be at least 1: " + queueCapacity);
+        }
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create " + directory, e);
+        }
+        this.directory = directory;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Queues rows to be appended to a file of the output directory.
+     * The rows are copied, so the caller may reuse its buffer right away.
+     *
+     * @param fileName the name of the file within the output directory
+     * @param rows the rows to append, each terminated by a newline
+     * @throws IllegalStateException if the sink is closed or interrupted while waiting for space
+     * @throws UncheckedIOException if an earlier write to that file failed
+     */
+    public void submit(String fileName, CharSequence rows) {
+        submit(fileName, rows.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Queues bytes to be appended to a file of the output directory.
+     * The array is queued as it is, so the caller must not modify it afterwards.
+     *
+     * @param fileName the name of the file within the output directory
+     * @param batch the bytes to append
+     * @throws IllegalStateException if the sink is closed or interrupted while waiting for space
+     * @throws UncheckedIOException if an earlier write to that file failed
+     */
+    public void submit(String fileName, byte[] batch) {
+        Channel channel;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Sink is closed");
+            }
+            channel = channels.get(fileName);
+            if (channel == null) {
+                channel = new Channel(directory.resolve(fileName), queueCapacity);
+                channels.put(fileName, channel);
+                openOrder.add(channel);
+            }
+            submitting++;
+        }
+        // A full queue only blocks producers of this file, so put without holding the lock
+        try {
+            channel.put(batch);
+        } finally {
+            synchronized (this) {
+                if (--submitting == 0) {
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits until every queued batch is written, then closes every file.
+     * Batches still being queued when the sink is closed are written too.
+     * Closing twice has no effect.
+     *
+     * @throws UncheckedIOException if any write or close failed
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        boolean interrupted = false;
+        while (submitting > 0) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        UncheckedIOException failure = null;
+        for (Channel channel : openOrder) {
+            try {
+                channel.finish();
+            } catch (UncheckedIOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * The queue and writer thread of a single output file.
+     */
+    private static final class Channel implements Runnable {
+        private static final byte[] END = new byte[0]; // marks the last batch, compared by identity
+
+        private final Path path;
+        private final BlockingQueue<byte[]> batches;
+        private final Thread writer;
+        private volatile IOException failure;
+
+        Channel(Path path, int capacity) {
+            this.path = path;
+            this.batches = new ArrayBlockingQueue<>(capacity);
+            this.writer = new Thread(this, "csv-writer-" + path.getFileName());
+            writer.start();
+        }
+
+        void put(byte[] batch) {
+            checkFailure();
+            try {
+                batches.put(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while queueing rows for " + path, e);
+            }
+        }
+
+        void finish() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    batches.put(END);
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            while (true) {
+                try {
+                    writer.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            checkFailure();
+        }
+
+        private void checkFailure() {
+            if (failure != null) {
+                throw new UncheckedIOException("Could not write " + path, failure);
+            }
+        }
+
+        /**
+         * Appends batches until the end marker. After a failure the remaining batches are
+         * still taken and dropped, so producers never wait on a writer that has given up.
+         */
+        @Override
+        public void run() {
+            boolean ended = false;
+            try (FileChannel file = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                for (byte[] batch = batches.take(); batch != END; batch = batches.take()) {
+                    if (failure == null) {
+                        write(file, batch);
+                    }
+                }
+                ended = true;
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            } catch (InterruptedException e) {
+                failure = new IOException("Writer of " + path + " was interrupted", e);
+            }
+            if (!ended) {
+                drain();
+            }
+        }
+
+        private void write(FileChannel file, byte[] batch) {
+            long start = Metrics.ENABLED ? System.nanoTime() : 0;
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(batch);
+                while (buffer.hasRemaining()) {
+                    file.write(buffer);
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+            if (Metrics.ENABLED) {
+                Metrics.recordBatch(Phase.WRITE, path.getFileName().toString(), batch.length, start);
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                try {
+                    if (batches.take() == END) {
+                        return;
+                    }
+                } catch (InterruptedException e) {
+                    // Keep draining, producers and close() rely on the queue being consumed
+                }
+            }
+        }
+    }
+}
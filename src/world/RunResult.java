@@ -0,0 +1,66 @@
+package world;
+
+import stats.StatisticsSeries;
+
+/**
+ * RunResult is what a finished run hands back to its Simulation: the statistics it recorded,
+ * everything needed to write them to its output file, the tick at which it converged and the
+ * CPU time it took.
+ * It is taken from a WorldWriter that ran in this process or read back from a Worker.
+ */
+final class RunResult {
+    private final String fileName;
+    private final OutputFormat format;
+    private final WorldConfig config;
+    private final String strategy;
+    private final StatisticsSeries series;
+    private final int convergenceTick;
+    private final long cpuNanos;
+
+    RunResult(String fileName, OutputFormat format, WorldConfig config, String strategy,
+              StatisticsSeries series, int convergenceTick, long cpuNanos) {
+        this.fileName = fileName;
+        this.format = format;
+        this.config = config;
+        this.strategy = strategy;
+        this.series = series;
+        this.convergenceTick = convergenceTick;
+        this.cpuNanos = cpuNanos;
+    }
+
+    /**
+     * @param world a world that has finished its run
+     * @param cpuNanos the CPU time of the run, in nanoseconds
+     * @return the result of the run
+     */
+    static RunResult of(WorldWriter world, long cpuNanos) {
+        return new RunResult(world.getFileName(), world.getFormat(), world.getConfig(),
+                world.getStrategy().toString(), world.getSeries(), world.getConvergenceTick(), cpuNanos);
+    }
+
+    /**
+     * Hands the statistics to the sink, to be appended to the output file of the run, and clears them.
+     */
+    void writeResults(ResultSink sink) {
+        WorldWriter.writeResults(sink, fileName, format, config, strategy, series);
+    }
+
+    String getFileName() {
+        return fileName;
+    }
+
+    StatisticsSeries getSeries() {
+        return series;
+    }
+
+    /**
+     * @return the tick of the sample at which the run converged, or -1 if it did not
+     */
+    int getConvergenceTick() {
+        return convergenceTick;
+    }
+
+    long getCpuNanos() {
+        return cpuNanos;
+    }
+}
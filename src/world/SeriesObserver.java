@@ -0,0 +1,37 @@
+package world;
+
+import stats.StatisticsSeries;
+import stats.WealthStatistics;
+
+/**
+ * SeriesObserver records every sample of a world in memory, as the rows of a StatisticsSeries.
+ * WorldWriter writes the series it records as CSV rows or as a binary block.
+ */
+public class SeriesObserver implements WorldObserver {
+    private final StatisticsSeries series;
+
+    /**
+     * Constructs an observer recording into a new series.
+     */
+    public SeriesObserver() {
+        this(new StatisticsSeries());
+    }
+
+    /**
+     * Constructs an observer recording into the given series.
+     *
+     * @param series the series to append samples to
+     */
+    public SeriesObserver(StatisticsSeries series) {
+        this.series = series;
+    }
+
+    @Override
+    public void onSample(World world, int tick, WealthStatistics stats) {
+        series.add(tick, stats);
+    }
+
+    public StatisticsSeries getSeries() {
+        return series;
+    }
+}
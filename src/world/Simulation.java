@@ -4,75 +4,574 @@ import person.strategy.DefaultStrategy;
 import person.strategy.InheritanceStrategy;
 import person.strategy.RandomSpawnStrategy;
 import person.strategy.ReproductionStrategy;
+import stats.ReplicateAggregator;
+import stats.SequentialSampler;
 import util.Params;
+import util.RandomSource;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * The Simulation class runs multiple simulations of the world model
  * varying different parameters such as population size, reproduction strategy,
  * and grain growth rate. Each simulation is repeated multiple times to gather data.
+ *
+ * Runs are independent of each other, so with a parallelism greater than one
+ * they are executed concurrently on a fixed thread pool. The results of each run
+ * are still appended to their output file in the same order as the serial path.
+ *
+ * Every run is seeded from the seed of the Simulation, so a sweep can be replayed exactly.
+ * Each section and each batch of forks draws its run seeds from a stream of its own, split from
+ * the stream of the Simulation in the order they are run, so no two scenarios share their runs.
+ * Besides the three standard sweeps, any sweep described by a SweepSpec can be run.
+ * Worlds of a Simulation share a TerrainCache, so runs on a common terrain set it up once.
+ * Every world prints its samples to the console unless console output is turned off.
+ * Runs of a section that sets a convergence tolerance stop once their samples are stationary,
+ * and cases of a section with precision targets run as many replicates as those need.
+ *
+ * With workers, the runs of sweeps are simulated by Worker processes instead of the threads of
+ * this one, which then only coordinates: it hands out the runs as WorkUnits through a WorkerPool,
+ * which reassigns the units of workers that die, and writes the results in the same order and
+ * with the same content as a local run. Workers do not print samples to the console.
  */
 public class Simulation {
+    private static final int NUM_RUNS = 10; // number of runs for each case of a scenario
+    private static final Path OUTPUT_PATH = Paths.get("stat"); // folder of the output files
+
+    private final int parallelism;
+    private final RandomSource seeds; // split once per section or batch of forks
+    private final OutputFormat format;
+    private final TerrainCache terrainCache = new TerrainCache();
+    private boolean consoleOutput = true;
+    private int workers; // 0 to simulate every run in this process
+    private WorkerPool workerPool; // started on the first run handed to workers
+
+    /**
+     * Constructs a Simulation that runs every simulation one after another with an arbitrary seed.
+     */
+    public Simulation() {
+        this(1, System.nanoTime());
+    }
+
+    /**
+     * Constructs a Simulation that runs up to the given number of simulations at once.
+     *
+     * @param parallelism the number of worlds simulated concurrently, 1 for the serial path
+     * @param seed the seed from which the seed of every run is derived
+     */
+    public Simulation(int parallelism, long seed) {
+        this(parallelism, seed, OutputFormat.CSV);
+    }
+
+    /**
+     * Constructs a Simulation that runs up to the given number of simulations at once
+     * and writes their results in the given format.
+     *
+     * @param parallelism the number of worlds simulated concurrently, 1 for the serial path
+     * @param seed the seed from which the seed of every run is derived
+     * @param format the format of the output files
+     */
+    public Simulation(int parallelism, long seed, OutputFormat format) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        this.seeds = new RandomSource(seed);
+        this.format = format;
+    }
+
+    /**
+     * Selects whether worlds print their samples to the console, which they do by default.
+     * Without console output, runs only record the statistics they write to their files,
+     * so nothing is formatted that nobody reads.
+     *
+     * @param consoleOutput whether to print the samples of every run
+     */
+    public void setConsoleOutput(boolean consoleOutput) {
+        this.consoleOutput = consoleOutput;
+    }
+
+    /**
+     * Selects how many worker processes simulate the runs of sweeps, started on this machine
+     * on the first sweep. With none, the default, every run is simulated in this process.
+     * Runs forked from a checkpoint are always simulated in this process.
+     *
+     * @param workers the number of worker processes, 0 for none
+     * @throws IllegalArgumentException if workers is negative
+     * @throws IllegalStateException if the workers have started already
+     */
+    public void setWorkers(int workers) {
+        if (workers < 0) {
+            throw new IllegalArgumentException("workers must not be negative: " + workers);
+        }
+        if (workerPool != null) {
+            throw new IllegalStateException("The workers have started already");
+        }
+        this.workers = workers;
+    }
+
+    /**
+     * Stops the worker processes, if any. A Simulation with workers should be closed once done.
+     */
+    public void close() {
+        if (workerPool != null) {
+            workerPool.close();
+            workerPool = null;
+        }
+    }
 
     /**
      * Runs simulations for different population sizes.
      * For each population size, runs 10 simulations with a default reproduction strategy
-     * and writes results to a CSV file named based on the population.
+     * and writes results to an output file named based on the population.
      */
     public void simulateVariousPopulation() {
-        List<Integer> populationList= new ArrayList<>();
-        populationList.add(100);
-        populationList.add(Params.NUM_PEOPLE); //250
-        populationList.add(500);
-        populationList.add(1000);
-
-        for(Integer i: populationList) {
-            for (int j = 0; j < 10; j++) {
-                World world = new WorldWriter(i, Params.GRAIN_GROWTH_INTERVAL, new DefaultStrategy(), "Population_" + i + ".csv");
-                world.runSimulation();
-            }
-        }
+        SweepSpec.Section section = new SweepSpec.Section("Population");
+        section.setAxis(SweepSpec.Axis.POPULATION,
+                Arrays.asList("100", String.valueOf(Params.NUM_PEOPLE), "500", "1000"));
+        section.setReplicates(NUM_RUNS);
+        runSection(section);
     }
 
     /**
      * Runs simulations using different reproduction strategies.
      * For each reproduction strategy, runs 10 simulations with default population size and grain growth interval,
-     * writing results to a CSV file named after the strategy.
+     * writing results to an output file named after the strategy.
      */
     public void simulateVariousReproductionRule() {
-        List<ReproductionStrategy> strategies= new ArrayList<>();
-        strategies.add(new RandomSpawnStrategy());
-        strategies.add(new InheritanceStrategy());
-        strategies.add(new DefaultStrategy());
-
-        for(ReproductionStrategy strategy: strategies) {
-            for (int j = 0; j < 10; j++) {
-                World world = new WorldWriter(Params.NUM_PEOPLE, Params.GRAIN_GROWTH_INTERVAL,
-                        strategy, strategy + ".csv");
-                world.runSimulation();
-            }
-        }
+        SweepSpec.Section section = new SweepSpec.Section("ReproductionRule");
+        section.setAxis(SweepSpec.Axis.STRATEGY, Arrays.asList(new RandomSpawnStrategy().toString(),
+                new InheritanceStrategy().toString(), new DefaultStrategy().toString()));
+        section.setReplicates(NUM_RUNS);
+        section.setOutput("{strategy}");
+        runSection(section);
     }
 
     /**
      * Runs simulations for different grain growth intervals.
      * For each growth rate, runs 10 simulations with default population and reproduction strategy,
-     * writing results to a CSV file named based on the growth rate.
+     * writing results to an output file named based on the growth rate.
      */
     public void simulateVariousGrowthRate() {
-        List<Integer> growthRateList= new ArrayList<>();
-        growthRateList.add(Params.GRAIN_GROWTH_INTERVAL); //1
-        growthRateList.add(5);
-        growthRateList.add(10);
-        growthRateList.add(50);
-
-        for(Integer i: growthRateList) {
-            for (int j = 0; j < 10; j++) {
-                World world = new WorldWriter(Params.NUM_PEOPLE, i, new DefaultStrategy(), "GrowthRate_" + i + ".csv");
-                world.runSimulation();
+        SweepSpec.Section section = new SweepSpec.Section("GrowthRate");
+        section.setAxis(SweepSpec.Axis.GROWTH,
+                Arrays.asList(String.valueOf(Params.GRAIN_GROWTH_INTERVAL), "5", "10", "50"));
+        section.setReplicates(NUM_RUNS);
+        runSection(section);
+    }
+
+    /**
+     * Runs every section of a sweep in turn, each as a scenario.
+     *
+     * @param spec the sweep to run
+     * @throws IllegalArgumentException if a case of the sweep is not a valid world
+     */
+    public void runSweep(SweepSpec spec) {
+        for (SweepSpec.Section section : spec.getSections()) {
+            section.expand(); // reject an invalid case before any section starts
+        }
+        for (SweepSpec.Section section : spec.getSections()) {
+            runSection(section);
+        }
+    }
+
+    /**
+     * Runs a world up to the given tick and captures it, as the shared starting point of forks.
+     *
+     * @param config the parameters of the world, including its seed
+     * @param strategy the reproduction strategy used during the burn-in
+     * @param ticks the number of ticks to simulate before the checkpoint
+     * @return the checkpoint of the burned-in world
+     */
+    public WorldCheckpoint burnIn(WorldConfig config, ReproductionStrategy strategy, int ticks) {
+        World world = new World(config, strategy);
+        world.advanceTo(ticks);
+        return world.checkpoint();
+    }
+
+    /**
+     * Runs every given strategy from the same checkpoint instead of simulating the shared
+     * prefix again for each run. Each replicate of each strategy is a fork seeded from a stream
+     * split from the seed of the Simulation for this batch, and writes its statistics from the tick of the checkpoint on
+     * to an output file named after the scenario and the strategy, e.g. Fork_Default.csv.
+     *
+     * @param scenario the name of the scenario, which prefixes the output files
+     * @param checkpoint the saved state every run starts from
+     * @param strategies the reproduction strategies to run from the checkpoint
+     * @param replicates the number of runs of each strategy
+     */
+    public void forkFromCheckpoint(String scenario, WorldCheckpoint checkpoint,
+                                   List<ReproductionStrategy> strategies, int replicates) {
+        WorldConfig config = checkpoint.getConfig();
+        long cost = (long) config.getNumPeople() * Math.max(config.getMaxTick() + 1 - checkpoint.getTick(), 0);
+        RandomSource forkSeeds = seeds.split();
+        List<PlannedRun> runs = new ArrayList<>();
+        for (ReproductionStrategy strategy : strategies) {
+            String fileName = format.fileName(scenario + "_" + strategy);
+            for (int j = 0; j < replicates; j++) {
+                long forkSeed = forkSeeds.nextLong();
+                runs.add(new PlannedRun(() -> observe(new WorldWriter(checkpoint, strategy, fileName, format, forkSeed)), cost));
+            }
+        }
+        runAll(scenario, runs);
+    }
+
+    /**
+     * Runs every replicate of every case of a section. Run seeds are drawn from the stream of the
+     * section case by case, replicate by replicate, so they do not depend on scheduling.
+     */
+    private void runSection(SweepSpec.Section section) {
+        if (section.isAdaptive()) {
+            runAdaptive(section);
+            return;
+        }
+        RandomSource sectionSeeds = seeds.split();
+        List<PlannedRun> runs = new ArrayList<>();
+        for (SweepSpec.Case sweepCase : section.expand()) {
+            for (int j = 0; j < section.getReplicates(); j++) {
+                runs.add(planRun(section, sweepCase, sectionSeeds.nextLong(), null));
+            }
+        }
+        runAll(section.getName(), runs);
+    }
+
+    /**
+     * Runs the cases of a section with precision targets in rounds. Every case first runs its
+     * minimum number of replicates, then each round runs the replicates its SequentialSampler
+     * still asks for, until no case asks for more. All cases of a round share the pool.
+     *
+     * Each case draws its run seeds from its own stream, split from the stream of the section,
+     * and its replicates reach its sampler in the order they were planned, so how many runs a case
+     * takes and what they write do not depend on scheduling. Reports the runs each case took and
+     * the confidence interval of each target.
+     */
+    private void runAdaptive(SweepSpec.Section section) {
+        long start = System.nanoTime();
+        List<SweepSpec.Case> cases = section.expand();
+        RandomSource sectionSeeds = seeds.split();
+        List<RandomSource> caseSeeds = new ArrayList<>();
+        List<SequentialSampler> samplers = new ArrayList<>();
+        for (int c = 0; c < cases.size(); c++) {
+            caseSeeds.add(sectionSeeds.split());
+            samplers.add(section.createSampler());
+        }
+
+        Map<String, ReplicateAggregator> aggregates = new LinkedHashMap<>();
+        Convergence convergence = new Convergence();
+        long serialNanos = 0;
+        int numRuns = 0;
+        try (ResultSink sink = new ResultSink(OUTPUT_PATH)) {
+            while (true) {
+                List<PlannedRun> runs = new ArrayList<>();
+                for (int c = 0; c < cases.size(); c++) {
+                    int batch = samplers.get(c).nextBatch();
+                    for (int j = 0; j < batch; j++) {
+                        runs.add(planRun(section, cases.get(c), caseSeeds.get(c).nextLong(), samplers.get(c)));
+                    }
+                }
+                if (runs.isEmpty()) {
+                    break;
+                }
+                serialNanos += runBatch(section.getName(), runs, sink, aggregates, convergence);
+                numRuns += runs.size();
+            }
+        }
+
+        writeProcessed(aggregates);
+        report(section.getName(), numRuns, start, serialNanos, convergence, workers > 0);
+        for (int c = 0; c < cases.size(); c++) {
+            SequentialSampler sampler = samplers.get(c);
+            System.out.printf("%s: %d runs, %s%s%n", cases.get(c).getFileName(), sampler.getReplicates(),
+                    sampler.describe(), sampler.isPrecise() ? "" : ", target not reached");
+        }
+    }
+
+    /**
+     * Plans a run of a case of a section, which creates its world when called.
+     *
+     * @param sampler the sampler of the case, which the run is added to once finished, or null
+     */
+    private PlannedRun planRun(SweepSpec.Section section, SweepSpec.Case sweepCase, long runSeed,
+                               SequentialSampler sampler) {
+        WorkUnit unit = new WorkUnit(sweepCase.createConfig(runSeed), sweepCase.createStrategy().toString(),
+                format.fileName(sweepCase.getFileName()), format, section.createDetector());
+        return new PlannedRun(() -> observe(unit.createWorld(terrainCache)), sweepCase.getCost(), sampler, unit);
+    }
+
+    /**
+     * Adds the console to the observers of a world of this Simulation, unless it is turned off.
+     */
+    private WorldWriter observe(WorldWriter world) {
+        if (consoleOutput) {
+            world.addObserver(new ConsoleObserver());
+        }
+        return world;
+    }
+
+    /**
+     * Creates and runs every world of a scenario, then writes their results in the order of the list.
+     * Results are handed to a ResultSink, which appends them on background threads and has
+     * written and closed every file of the scenario by the time this method returns.
+     * Each run is also added to a ReplicateAggregator of its file as it is handed off, and the
+     * per-tick summaries of the scenario are written once all runs are done.
+     * Reports the wall-clock time against the summed CPU time of the individual runs,
+     * which is what the serial path would have taken, and how many runs stopped early.
+     *
+     * @param scenario the name of the scenario, used for reporting
+     * @param runs the runs of the scenario, in the order results are written
+     */
+    private void runAll(String scenario, List<PlannedRun> runs) {
+        long start = System.nanoTime();
+        Map<String, ReplicateAggregator> aggregates = new LinkedHashMap<>();
+        Convergence convergence = new Convergence();
+        long serialNanos;
+        try (ResultSink sink = new ResultSink(OUTPUT_PATH)) {
+            serialNanos = runBatch(scenario, runs, sink, aggregates, convergence);
+        }
+        writeProcessed(aggregates);
+        report(scenario, runs.size(), start, serialNanos, convergence, onWorkers(runs));
+    }
+
+    /**
+     * Creates and runs a batch of worlds and hands their results to the sink in the order of the list.
+     * The serial path runs and hands off each world in turn on the calling thread. Otherwise the worlds
+     * are simulated on a fixed pool, most expensive first so that a long run started last does not
+     * keep the pool waiting, and the results of a run are only handed off once every run listed
+     * before it has been, so rows of each run stay contiguous and ordered whatever the schedule.
+     * As it is handed off, each run is added to the aggregate of its file and to its sampler, if any.
+     *
+     * @param scenario the name of the scenario, used in error messages
+     * @param runs the runs of the batch, in the order results are written
+     * @return the summed CPU time of the runs, in nanoseconds
+     */
+    private long runBatch(String scenario, List<PlannedRun> runs, ResultSink sink,
+                          Map<String, ReplicateAggregator> aggregates, Convergence convergence) {
+        long serialNanos = 0;
+        if (onWorkers(runs)) {
+            return runOnWorkers(scenario, runs, sink, aggregates, convergence);
+        }
+        if (parallelism == 1) {
+            for (PlannedRun run : runs) {
+                RunResult result = new TimedRun(run).call();
+                handOff(run, result, sink, aggregates, convergence);
+                serialNanos += result.getCpuNanos();
+            }
+            return serialNanos;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<Integer> schedule = new ArrayList<>();
+            for (int i = 0; i < runs.size(); i++) {
+                schedule.add(i);
+            }
+            schedule.sort(Comparator.comparingLong((Integer i) -> runs.get(i).cost).reversed());
+            List<Future<RunResult>> results = new ArrayList<>(Collections.nCopies(runs.size(), null));
+            for (int i : schedule) {
+                results.set(i, executor.submit(new TimedRun(runs.get(i))));
+            }
+            for (int i = 0; i < runs.size(); i++) {
+                RunResult result = results.get(i).get();
+                handOff(runs.get(i), result, sink, aggregates, convergence);
+                serialNanos += result.getCpuNanos();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running " + scenario, e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A run of " + scenario + " failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return serialNanos;
+    }
+
+    /**
+     * @return whether the runs go to the workers, which they do if there are workers and all runs have units
+     */
+    private boolean onWorkers(List<PlannedRun> runs) {
+        return workers > 0 && runs.stream().allMatch(run -> run.unit != null);
+    }
+
+    /**
+     * Runs a batch like runBatch, but on the worker processes, which take the units of the runs
+     * costliest first. Results are handed off in the order of the runs, as they are locally.
+     *
+     * @return the summed CPU time of the runs in the workers, in nanoseconds
+     */
+    private long runOnWorkers(String scenario, List<PlannedRun> runs, ResultSink sink,
+                              Map<String, ReplicateAggregator> aggregates, Convergence convergence) {
+        if (workerPool == null) {
+            workerPool = new WorkerPool(workers, WorkerPool.localCommand());
+        }
+        int restarts = workerPool.getRestarts();
+        List<Integer> schedule = new ArrayList<>();
+        for (int i = 0; i < runs.size(); i++) {
+            schedule.add(i);
+        }
+        schedule.sort(Comparator.comparingLong((Integer i) -> runs.get(i).cost).reversed());
+        List<Future<RunResult>> results = new ArrayList<>(Collections.nCopies(runs.size(), null));
+        for (int i : schedule) {
+            results.set(i, workerPool.submit(runs.get(i).unit));
+        }
+        long serialNanos = 0;
+        try {
+            for (int i = 0; i < runs.size(); i++) {
+                RunResult result = results.get(i).get();
+                handOff(runs.get(i), result, sink, aggregates, convergence);
+                serialNanos += result.getCpuNanos();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running " + scenario, e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A run of " + scenario + " failed", e.getCause());
+        }
+        if (workerPool.getRestarts() > restarts) {
+            System.out.printf("%s: replaced %d dead workers%n", scenario, workerPool.getRestarts() - restarts);
+        }
+        return serialNanos;
+    }
+
+    /**
+     * Records a finished run and hands its results to the sink.
+     */
+    private static void handOff(PlannedRun run, RunResult result, ResultSink sink,
+                                Map<String, ReplicateAggregator> aggregates, Convergence convergence) {
+        aggregate(aggregates, result);
+        convergence.add(result);
+        if (run.sampler != null) {
+            run.sampler.add(result.getSeries());
+        }
+        result.writeResults(sink);
+    }
+
+    /**
+     * Reports the wall-clock time of a scenario against the summed CPU time of its runs,
+     * and how many of them stopped early.
+     */
+    private void report(String scenario, int numRuns, long start, long serialNanos, Convergence convergence,
+                        boolean onWorkers) {
+        double wallSeconds = (System.nanoTime() - start) / 1e9;
+        double serialSeconds = serialNanos / 1e9;
+        System.out.printf("%s: %d runs in %.2f s wall-clock, %.2f s serial-equivalent, speedup %.2fx with %s%n",
+                scenario, numRuns, wallSeconds, serialSeconds, serialSeconds / wallSeconds,
+                onWorkers ? workers + " workers" : "parallelism " + parallelism);
+        if (convergence.runs > 0) {
+            System.out.printf("%s: %d of %d runs converged, on average at tick %.0f%n",
+                    scenario, convergence.runs, numRuns, (double) convergence.tickSum / convergence.runs);
+        }
+    }
+
+    /**
+     * Adds the statistics of a finished run to the aggregate of its output file.
+     */
+    private static void aggregate(Map<String, ReplicateAggregator> aggregates, RunResult result) {
+        aggregates.computeIfAbsent(result.getFileName(), name -> new ReplicateAggregator())
+                .add(result.getSeries());
+    }
+
+    /**
+     * Writes the per-tick summary of every output file of a scenario next to it,
+     * e.g. Population_100_Processed.csv for Population_100.csv, replacing earlier summaries.
+     * A summary covers the runs of this Simulation only, while the output file keeps the runs of
+     * earlier ones; its replicates column lets process_results.py tell the two apart.
+     */
+    private static void writeProcessed(Map<String, ReplicateAggregator> aggregates) {
+        for (Map.Entry<String, ReplicateAggregator> entry : aggregates.entrySet()) {
+            String baseName = entry.getKey().replaceFirst("\\.[^.]*$", "");
+            Path path = OUTPUT_PATH.resolve(baseName + "_Processed.csv");
+            try {
+                entry.getValue().writeProcessed(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write " + path, e);
+            }
+        }
+    }
+
+    /**
+     * Counts the runs of a scenario that stopped early and the ticks at which they did.
+     */
+    private static class Convergence {
+        private int runs;
+        private long tickSum;
+
+        void add(RunResult result) {
+            if (result.getConvergenceTick() >= 0) {
+                runs++;
+                tickSum += result.getConvergenceTick();
+            }
+        }
+    }
+
+    /**
+     * A run of a scenario with its estimated cost, creating its world when called.
+     * Runs of sweeps also carry their WorkUnit, so that workers can simulate them.
+     */
+    private static class PlannedRun {
+        private final Callable<WorldWriter> factory;
+        private final long cost;
+        private final SequentialSampler sampler; // of the case of the run, if its replicates are adaptive
+        private final WorkUnit unit; // null if only this process can simulate the run
+
+        PlannedRun(Callable<WorldWriter> factory, long cost) {
+            this(factory, cost, null, null);
+        }
+
+        PlannedRun(Callable<WorldWriter> factory, long cost, SequentialSampler sampler, WorkUnit unit) {
+            this.factory = factory;
+            this.cost = cost;
+            this.sampler = sampler;
+            this.unit = unit;
+        }
+    }
+
+    /**
+     * Creates and runs a single world, recording the CPU time the run took on its own.
+     * Falls back to elapsed time if the JVM cannot measure thread CPU time.
+     */
+    private static class TimedRun implements Callable<RunResult> {
+        private final PlannedRun run;
+
+        TimedRun(PlannedRun run) {
+            this.run = run;
+        }
+
+        @Override
+        public RunResult call() {
+            long start = now();
+            WorldWriter world;
+            try {
+                world = run.factory.call();
+            } catch (Exception e) {
+                throw new IllegalStateException("Could not create world", e);
+            }
+            world.runSimulation();
+            return RunResult.of(world, now() - start);
+        }
+
+        private static long now() {
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (threads.isCurrentThreadCpuTimeSupported()) {
+                return threads.getCurrentThreadCpuTime();
             }
+            return System.nanoTime();
         }
     }
 }
@@ -0,0 +1,624 @@
+package world;
+
+import person.strategy.DefaultStrategy;
+import person.strategy.InheritanceStrategy;
+import person.strategy.RandomSpawnStrategy;
+import person.strategy.ReproductionStrategy;
+import stats.ConvergenceDetector;
+import stats.SequentialSampler;
+import util.Params;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * SweepSpec describes parameter sweeps declaratively, as read from a sweep file:
+ *
+ * <pre>
+ * # comments and blank lines are ignored
+ * [Population]
+ * population = 100, 250, 500, 1000
+ * replicates = 10
+ * output = Population_{population}
+ * </pre>
+ *
+ * Every section is a scenario. Each axis key lists the values it takes, and the cases of a
+ * section are the cartesian product of its axes, the later axes of the list below varying
+ * fastest. Axes that are not given keep the defaults of Params.
+ *
+ *   population  number of people
+ *   growth      grain growth interval
+ *   strategy    Default, Inheritance or RandomSpawn
+ *   vision      maximum vision
+ *   metabolism  maximum metabolism
+ *   lifespan    minimum-maximum lifespan, e.g. 1-83
+ *   size        width and height, e.g. 51 or 100x80
+ *   ticks       maximum tick
+ *   bestland    percentage of patches seeded with the maximum grain
+ *   terrain     seed of the terrain, so that every run of a case has the same patches;
+ *               without it, each run rolls its own terrain from its seed
+ *
+ * replicates is the number of runs of each case (10 by default), and output names the
+ * output file of a case, where {axis} stands for the value of that axis. Without it, the
+ * name is the section name followed by the value of every axis with several values.
+ *
+ * ci sets the precision asked of the runs of each case instead of their number: each case
+ * runs replicates until the 95% confidence interval of every listed summary is at most the
+ * given half-width (see SequentialSampler), e.g. ci = final gini 0.01, mean gini 0.005.
+ * replicates then gives the minimum and maximum number of runs, e.g. 5-50 (5-100 by default).
+ *
+ * converge lets each run stop once its samples are stationary, within the given tolerance
+ * (see ConvergenceDetector), e.g. converge = 0.02. By default, the samples a converged run
+ * skips are filled with its steady state; pad = no writes only the samples simulated.
+ */
+public class SweepSpec {
+    private static final int DEFAULT_REPLICATES = 10;
+    private static final int DEFAULT_MIN_REPLICATES = 5; // of a case with a precision target
+    private static final int DEFAULT_MAX_REPLICATES = 100;
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{([a-z]+)}");
+
+    private final List<Section> sections = new ArrayList<>();
+
+    /**
+     * An axis of a sweep, which sets one parameter of the world or its strategy.
+     */
+    public enum Axis {
+        POPULATION("population"),
+        GROWTH("growth"),
+        STRATEGY("strategy"),
+        VISION("vision"),
+        METABOLISM("metabolism"),
+        LIFESPAN("lifespan"),
+        SIZE("size"),
+        TICKS("ticks"),
+        BESTLAND("bestland"),
+        TERRAIN("terrain");
+
+        private final String key;
+
+        Axis(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * @param key the key of an axis in a sweep file
+         * @return the axis with that key, or null if there is none
+         */
+        public static Axis forKey(String key) {
+            for (Axis axis : values()) {
+                if (axis.key.equals(key)) {
+                    return axis;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Sets the parameter of this axis in a configuration.
+         *
+         * @throws IllegalArgumentException if the value is not valid for this axis
+         */
+        void apply(WorldConfig config, String value) {
+            switch (this) {
+                case POPULATION:
+                    config.setNumPeople(parseInt(value));
+                    break;
+                case GROWTH:
+                    config.setGrainGrowthRate(parseInt(value));
+                    break;
+                case STRATEGY:
+                    createStrategy(value); // the strategy is not part of the configuration
+                    break;
+                case VISION:
+                    config.setMaxVision(parseInt(value));
+                    break;
+                case METABOLISM:
+                    config.setMaxMetabolism(parseInt(value));
+                    break;
+                case LIFESPAN: {
+                    int[] bounds = parsePair(value, '-');
+                    config.setLifespan(bounds[0], bounds[1]);
+                    break;
+                }
+                case SIZE: {
+                    int[] bounds = parsePair(value, 'x');
+                    config.setSize(bounds[0], bounds[1]);
+                    break;
+                }
+                case TICKS:
+                    config.setMaxTick(parseInt(value));
+                    break;
+                case BESTLAND:
+                    config.setPercentBestLand(parseInt(value));
+                    break;
+                case TERRAIN:
+                    config.setTerrainSeed(parseLong(value));
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown axis " + this);
+            }
+        }
+
+        private static int parseInt(String value) {
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a whole number: " + value);
+            }
+        }
+
+        private static double parseDouble(String value) {
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number: " + value);
+            }
+        }
+
+        private static boolean parseYesNo(String value) {
+            switch (value) {
+                case "yes": return true;
+                case "no": return false;
+                default: throw new IllegalArgumentException("Expected yes or no: " + value);
+            }
+        }
+
+        private static long parseLong(String value) {
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a whole number: " + value);
+            }
+        }
+
+        // "a" stands for "a<separator>a", e.g. a size of 51 is 51x51
+        private static int[] parsePair(String value, char separator) {
+            int at = value.indexOf(separator);
+            if (at < 0) {
+                int single = parseInt(value);
+                return new int[] {single, single};
+            }
+            return new int[] {parseInt(value.substring(0, at).trim()), parseInt(value.substring(at + 1).trim())};
+        }
+    }
+
+    /**
+     * A scenario of a sweep: the values of its axes, the number of replicates of each case
+     * and the template of the output file names.
+     */
+    public static class Section {
+        private final String name;
+        private final Map<Axis, List<String>> axes = new EnumMap<>(Axis.class);
+        private int replicates = DEFAULT_REPLICATES;
+        private int maxReplicates; // 0 unless replicates is a range
+        private boolean replicatesGiven;
+        private final List<SequentialSampler.Target> targets = new ArrayList<>();
+        private String output;
+        private double convergence; // tolerance of the convergence detector, 0 to run every tick
+        private boolean padding = true;
+
+        public Section(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Sets the values an axis takes in this section.
+         * Values are only checked on their own here; whether they fit together is
+         * checked when the section is expanded.
+         *
+         * @throws IllegalArgumentException if there are no values or one cannot be parsed
+         */
+        public void setAxis(Axis axis, List<String> values) {
+            if (values.isEmpty()) {
+                throw new IllegalArgumentException("Axis " + axis.getKey() + " has no values");
+            }
+            WorldConfig scratch = new WorldConfig(Params.NUM_PEOPLE, Params.GRAIN_GROWTH_INTERVAL, 0);
+            for (String value : values) {
+                axis.apply(scratch, value);
+            }
+            axes.put(axis, new ArrayList<>(values));
+        }
+
+        /**
+         * @throws IllegalArgumentException if the number of replicates is not positive
+         */
+        public void setReplicates(int replicates) {
+            if (replicates < 1) {
+                throw new IllegalArgumentException("A case needs at least one replicate, not " + replicates);
+            }
+            this.replicates = replicates;
+            this.maxReplicates = 0;
+            this.replicatesGiven = true;
+        }
+
+        /**
+         * Sets the bounds of the number of runs of each case, for a section with precision targets.
+         *
+         * @throws IllegalArgumentException if the bounds are not 2 or more, in order
+         */
+        public void setReplicates(int minReplicates, int maxReplicates) {
+            if (minReplicates < 2 || maxReplicates < minReplicates) {
+                throw new IllegalArgumentException("Invalid replicates " + minReplicates + "-" + maxReplicates
+                        + ", a confidence interval needs at least 2");
+            }
+            this.replicates = minReplicates;
+            this.maxReplicates = maxReplicates;
+            this.replicatesGiven = true;
+        }
+
+        /**
+         * Runs each case of this section until the confidence intervals of the targets are narrow enough.
+         *
+         * @throws IllegalArgumentException if there are no targets
+         */
+        public void setTargets(List<SequentialSampler.Target> targets) {
+            if (targets.isEmpty()) {
+                throw new IllegalArgumentException("No ci targets");
+            }
+            this.targets.clear();
+            this.targets.addAll(targets);
+        }
+
+        /**
+         * Sets the name of the output files, where {axis} stands for the value of that axis.
+         *
+         * @throws IllegalArgumentException if the template names an unknown axis
+         */
+        public void setOutput(String output) {
+            Matcher placeholder = PLACEHOLDER.matcher(output);
+            while (placeholder.find()) {
+                if (Axis.forKey(placeholder.group(1)) == null) {
+                    throw new IllegalArgumentException("Unknown axis {" + placeholder.group(1) + "} in output " + output);
+                }
+            }
+            this.output = output;
+        }
+
+        /**
+         * Lets every run of this section stop once converged, within the given tolerance.
+         *
+         * @throws IllegalArgumentException if the tolerance is not positive
+         */
+        public void setConvergence(double tolerance) {
+            if (!(tolerance > 0)) {
+                throw new IllegalArgumentException("The convergence tolerance must be positive: " + tolerance);
+            }
+            this.convergence = tolerance;
+        }
+
+        /**
+         * Selects whether converged runs fill the samples they skip with their steady state.
+         */
+        public void setPadding(boolean padding) {
+            this.padding = padding;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getReplicates() {
+            return replicates;
+        }
+
+        /**
+         * @return whether the number of runs of each case depends on their precision
+         */
+        public boolean isAdaptive() {
+            return !targets.isEmpty();
+        }
+
+        /**
+         * @return a new sampler deciding the replicates of a case, or null if every case runs a fixed number
+         */
+        public SequentialSampler createSampler() {
+            if (targets.isEmpty()) {
+                return null;
+            }
+            return maxReplicates > 0
+                    ? new SequentialSampler(targets, replicates, maxReplicates)
+                    : new SequentialSampler(targets, DEFAULT_MIN_REPLICATES, DEFAULT_MAX_REPLICATES);
+        }
+
+        /**
+         * @return a new convergence detector for a run of this section, or null if runs do not stop early
+         */
+        public ConvergenceDetector createDetector() {
+            if (convergence == 0) {
+                return null;
+            }
+            return new ConvergenceDetector(ConvergenceDetector.DEFAULT_WINDOW, convergence, padding);
+        }
+
+        /**
+         * Expands the cartesian product of the axes of this section.
+         *
+         * @return every case of this section, in the order of the axes
+         * @throws IllegalArgumentException if the parameters of a case do not describe a valid world
+         */
+        public List<Case> expand() {
+            if (maxReplicates > 0 && targets.isEmpty()) {
+                throw new IllegalArgumentException("Section " + name + ": a range of replicates needs ci targets");
+            }
+            if (!targets.isEmpty() && replicatesGiven && maxReplicates == 0) {
+                throw new IllegalArgumentException("Section " + name + ": with ci targets, replicates is a range such as 5-50");
+            }
+            List<Case> cases = new ArrayList<>();
+            expand(new EnumMap<>(Axis.class), Axis.values(), 0, cases);
+            return cases;
+        }
+
+        private void expand(Map<Axis, String> values, Axis[] order, int depth, List<Case> cases) {
+            if (depth == order.length) {
+                Case result = new Case(new EnumMap<>(values), fileName(values));
+                try {
+                    result.createConfig(0).validate();
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Case " + result.getFileName() + " of section "
+                            + name + ": " + e.getMessage(), e);
+                }
+                cases.add(result);
+                return;
+            }
+            Axis axis = order[depth];
+            List<String> axisValues = axes.get(axis);
+            if (axisValues == null) {
+                expand(values, order, depth + 1, cases);
+                return;
+            }
+            for (String value : axisValues) {
+                values.put(axis, value);
+                expand(values, order, depth + 1, cases);
+            }
+            values.remove(axis);
+        }
+
+        private String fileName(Map<Axis, String> values) {
+            String template = output;
+            if (template == null) {
+                StringBuilder generated = new StringBuilder(name);
+                for (Map.Entry<Axis, List<String>> axis : axes.entrySet()) {
+                    if (axis.getValue().size() > 1) {
+                        generated.append("_{").append(axis.getKey().getKey()).append('}');
+                    }
+                }
+                template = generated.toString();
+            }
+            Matcher placeholder = PLACEHOLDER.matcher(template);
+            StringBuilder result = new StringBuilder();
+            while (placeholder.find()) {
+                Axis axis = Axis.forKey(placeholder.group(1));
+                placeholder.appendReplacement(result, Matcher.quoteReplacement(valueOf(axis, values)));
+            }
+            placeholder.appendTail(result);
+            return result.toString();
+        }
+
+        // the value of an axis in a case, or its default if the section does not set it
+        private static String valueOf(Axis axis, Map<Axis, String> values) {
+            String value = values.get(axis);
+            if (value != null) {
+                return value;
+            }
+            WorldConfig defaults = new WorldConfig(Params.NUM_PEOPLE, Params.GRAIN_GROWTH_INTERVAL, 0);
+            switch (axis) {
+                case POPULATION: return String.valueOf(defaults.getNumPeople());
+                case GROWTH: return String.valueOf(defaults.getGrainGrowthRate());
+                case STRATEGY: return new DefaultStrategy().toString();
+                case VISION: return String.valueOf(defaults.getMaxVision());
+                case METABOLISM: return String.valueOf(defaults.getMaxMetabolism());
+                case LIFESPAN: return defaults.getMinLife() + "-" + defaults.getMaxLife();
+                case SIZE: return defaults.getWidth() + "x" + defaults.getHeight();
+                case TICKS: return String.valueOf(defaults.getMaxTick());
+                case BESTLAND: return String.valueOf(defaults.getPercentBestLand());
+                case TERRAIN: return "seed";
+                default: throw new IllegalStateException("Unknown axis " + axis);
+            }
+        }
+    }
+
+    /**
+     * A single case of a section: one value for each of its axes.
+     */
+    public static class Case {
+        private final Map<Axis, String> values;
+        private final String fileName;
+
+        private Case(Map<Axis, String> values, String fileName) {
+            this.values = Collections.unmodifiableMap(values);
+            this.fileName = fileName;
+        }
+
+        /**
+         * @param seed the seed of the run
+         * @return the configuration of a run of this case
+         */
+        public WorldConfig createConfig(long seed) {
+            WorldConfig config = new WorldConfig(Params.NUM_PEOPLE, Params.GRAIN_GROWTH_INTERVAL, seed);
+            for (Map.Entry<Axis, String> value : values.entrySet()) {
+                value.getKey().apply(config, value.getValue());
+            }
+            return config;
+        }
+
+        /**
+         * @return a new instance of the reproduction strategy of this case
+         */
+        public ReproductionStrategy createStrategy() {
+            String strategy = values.get(Axis.STRATEGY);
+            return strategy == null ? new DefaultStrategy() : SweepSpec.createStrategy(strategy);
+        }
+
+        /**
+         * Estimates the relative cost of a run of this case, proportional to the number of
+         * person-ticks it simulates plus the patches whose terrain it sets up.
+         */
+        public long getCost() {
+            WorldConfig config = createConfig(0);
+            return (long) config.getNumPeople() * (config.getMaxTick() + 1)
+                    + (long) config.getWidth() * config.getHeight();
+        }
+
+        /**
+         * @return the name of the output file of this case, without extension
+         */
+        public String getFileName() {
+            return fileName;
+        }
+
+        public Map<Axis, String> getValues() {
+            return values;
+        }
+    }
+
+    //--- Parsing functions ---//
+
+    /**
+     * Reads a sweep file.
+     *
+     * @param path the sweep file
+     * @return the sweeps it describes
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the file is not a valid sweep file, naming the line
+     */
+    public static SweepSpec parse(Path path) throws IOException {
+        return parse(Files.readAllLines(path, StandardCharsets.UTF_8), path.toString());
+    }
+
+    /**
+     * Parses the lines of a sweep file.
+     *
+     * @param lines the lines of the sweep file
+     * @param source the name of the file, used in error messages
+     * @return the sweeps it describes
+     * @throws IllegalArgumentException if the lines are not a valid sweep file, naming the line,
+     *         or if two cases would write the same output file, naming their sections
+     */
+    public static SweepSpec parse(List<String> lines, String source) {
+        SweepSpec spec = new SweepSpec();
+        Section section = null;
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            try {
+                if (line.startsWith("[") && line.endsWith("]")) {
+                    section = new Section(line.substring(1, line.length() - 1).trim());
+                    spec.add(section);
+                    continue;
+                }
+                int equals = line.indexOf('=');
+                if (equals < 0) {
+                    throw new IllegalArgumentException("Expected [section] or key = value");
+                }
+                if (section == null) {
+                    throw new IllegalArgumentException("Key outside of a [section]");
+                }
+                String key = line.substring(0, equals).trim();
+                String value = line.substring(equals + 1).trim();
+                if (key.equals("replicates")) {
+                    if (value.indexOf('-') > 0) {
+                        int[] bounds = Axis.parsePair(value, '-');
+                        section.setReplicates(bounds[0], bounds[1]);
+                    } else {
+                        section.setReplicates(Axis.parseInt(value));
+                    }
+                } else if (key.equals("ci")) {
+                    List<SequentialSampler.Target> targets = new ArrayList<>();
+                    for (String item : value.split(",")) {
+                        targets.add(SequentialSampler.Target.parse(item));
+                    }
+                    section.setTargets(targets);
+                } else if (key.equals("output")) {
+                    section.setOutput(value);
+                } else if (key.equals("converge")) {
+                    section.setConvergence(Axis.parseDouble(value));
+                } else if (key.equals("pad")) {
+                    section.setPadding(Axis.parseYesNo(value));
+                } else {
+                    Axis axis = Axis.forKey(key);
+                    if (axis == null) {
+                        throw new IllegalArgumentException("Unknown key " + key);
+                    }
+                    List<String> values = new ArrayList<>();
+                    for (String item : value.split(",")) {
+                        values.add(item.trim());
+                    }
+                    section.setAxis(axis, values);
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(source + ":" + (i + 1) + ": " + e.getMessage(), e);
+            }
+        }
+        try {
+            spec.checkFileNames();
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(source + ": " + e.getMessage(), e);
+        }
+        return spec;
+    }
+
+    /**
+     * Checks that no two cases of this sweep write the same output file, which would append
+     * their runs to one file and merge them into one aggregate.
+     *
+     * @throws IllegalArgumentException if two cases share an output file or a case is invalid
+     */
+    private void checkFileNames() {
+        Map<String, Section> writers = new HashMap<>();
+        for (Section section : sections) {
+            for (Case sweepCase : section.expand()) {
+                Section other = writers.putIfAbsent(sweepCase.getFileName(), section);
+                if (other == section) {
+                    throw new IllegalArgumentException("Section " + section.getName() + " writes "
+                            + sweepCase.getFileName() + " for more than one case; add its axes to the output");
+                } else if (other != null) {
+                    throw new IllegalArgumentException("Sections " + other.getName() + " and " + section.getName()
+                            + " both write " + sweepCase.getFileName());
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a section to this sweep.
+     */
+    public void add(Section section) {
+        sections.add(section);
+    }
+
+    public List<Section> getSections() {
+        return Collections.unmodifiableList(sections);
+    }
+
+    /**
+     * @param name the name of a reproduction strategy, as printed by its toString
+     * @return a new instance of that strategy
+     * @throws IllegalArgumentException if there is no strategy of that name
+     */
+    public static ReproductionStrategy createStrategy(String name) {
+        for (ReproductionStrategy strategy : Arrays.asList(
+                new DefaultStrategy(), new InheritanceStrategy(), new RandomSpawnStrategy())) {
+            if (strategy.toString().equals(name)) {
+                return strategy;
+            }
+        }
+        throw new IllegalArgumentException("Unknown strategy " + name);
+    }
+}
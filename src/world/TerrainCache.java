@@ -0,0 +1,220 @@
+package world;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * TerrainCache keeps the terrains worlds have set up, so that other worlds on the same
+ * terrain skip rolling the best land, diffusing the grain and flooring it.
+ *
+ * A terrain is identified by everything it is computed from: the size and layout of the
+ * grid, the terrain seed, the percentage of best land and the diffusion mode. It is kept
+ * as the immutable array of the maximum grain of every cell, which every grid created
+ * from it shares; each grid only copies it once as its starting grain.
+ *
+ * The cache holds at most a given number of bytes of terrain and evicts the least
+ * recently used terrains beyond that. It can be shared by worlds set up on several
+ * threads. When several worlds ask for a terrain that is not cached yet, one of them
+ * sets it up and the others wait for it.
+ */
+public class TerrainCache {
+    public static final long DEFAULT_MAX_BYTES = 256L << 20;
+
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true); // least recently used first
+    private long bytes;
+    private long hits;
+    private long misses;
+
+    /**
+     * Constructs a cache holding up to DEFAULT_MAX_BYTES of terrain.
+     */
+    public TerrainCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Constructs a cache holding up to the given number of bytes of terrain.
+     *
+     * @param maxBytes the most memory the cached terrains may take up
+     * @throws IllegalArgumentException if maxBytes is negative
+     */
+    public TerrainCache(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Invalid cache size: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns a grid on the terrain of a configuration, with every patch at its maximum
+     * grain and no occupant. If the terrain is cached, the grid is created on it; otherwise
+     * the setup creates the grid and its terrain is cached for the next worlds.
+     *
+     * @param config the configuration the terrain is computed from
+     * @param setup sets up a new grid with the terrain of the configuration
+     * @return a grid on the terrain of the configuration, not shared with any world
+     */
+    Grid gridFor(WorldConfig config, Supplier<Grid> setup) {
+        Key key = new Key(config);
+        Entry entry;
+        boolean owner = false;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry();
+                entries.put(key, entry);
+                owner = true;
+                misses++;
+            } else {
+                hits++;
+            }
+        }
+
+        if (owner) {
+            Grid grid;
+            try {
+                grid = setup.get();
+            } catch (RuntimeException | Error e) {
+                synchronized (this) {
+                    entries.remove(key, entry);
+                }
+                entry.terrain.completeExceptionally(e);
+                throw e;
+            }
+            double[] maxGrain = grid.shareTerrain();
+            synchronized (this) {
+                entry.bytes = (long) maxGrain.length * Double.BYTES;
+                if (entry.bytes > maxBytes) {
+                    entries.remove(key, entry); // would evict everything else and still not fit
+                } else if (entries.get(key) == entry) {
+                    bytes += entry.bytes;
+                    evict();
+                }
+            }
+            entry.terrain.complete(maxGrain);
+            return grid;
+        }
+
+        double[] maxGrain;
+        try {
+            maxGrain = entry.terrain.join();
+        } catch (CompletionException e) {
+            return setup.get(); // the world setting it up failed, so try again without the cache
+        }
+        return Grid.onTerrain(config.getWidth(), config.getHeight(), config.getLayout(), maxGrain);
+    }
+
+    /**
+     * Evicts the least recently used terrains until the cached ones fit.
+     * Terrains still being set up take no space yet and are kept.
+     */
+    private void evict() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.terrain.isDone()) {
+                bytes -= entry.bytes;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes every cached terrain. Grids created on them keep them.
+     */
+    public synchronized void clear() {
+        entries.values().removeIf(entry -> entry.terrain.isDone());
+        bytes = 0;
+    }
+
+    //--- Getter functions ---//
+
+    /**
+     * @return the number of terrains cached or being set up
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the memory taken up by the cached terrains, in bytes
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return the number of worlds that found their terrain in the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of worlds that had to set up their terrain
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Entry is a cached terrain, or one that a world is still setting up.
+     */
+    private static final class Entry {
+        private final CompletableFuture<double[]> terrain = new CompletableFuture<>();
+        private long bytes; // set once the terrain is done
+    }
+
+    /**
+     * Key holds every parameter a terrain is computed from.
+     */
+    private static final class Key {
+        private final int width;
+        private final int height;
+        private final CellLayout layout;
+        private final long terrainSeed;
+        private final int percentBestLand;
+        private final int diffusionPasses;
+        private final boolean sequentialDiffusion;
+
+        private Key(WorldConfig config) {
+            this.width = config.getWidth();
+            this.height = config.getHeight();
+            this.layout = config.getLayout();
+            this.terrainSeed = config.getTerrainSeed();
+            this.percentBestLand = config.getPercentBestLand();
+            this.diffusionPasses = World.DIFFUSION_PASSES;
+            this.sequentialDiffusion = config.isSequentialDiffusion();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return width == other.width && height == other.height && layout == other.layout
+                    && terrainSeed == other.terrainSeed && percentBestLand == other.percentBestLand
+                    && diffusionPasses == other.diffusionPasses && sequentialDiffusion == other.sequentialDiffusion;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = Long.hashCode(terrainSeed);
+            h = 31 * h + width;
+            h = 31 * h + height;
+            h = 31 * h + layout.hashCode();
+            h = 31 * h + percentBestLand;
+            h = 31 * h + diffusionPasses;
+            return 31 * h + (sequentialDiffusion ? 1 : 0);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package world;
+
+import stats.ConvergenceDetector;
+import stats.StatisticsSeries;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * WorkUnit describes a run of a case completely, so that any process can simulate it: the
+ * configuration of the run, its reproduction strategy, its output file and format, and how
+ * it detects convergence.
+ *
+ * A Simulation creates the worlds of its units itself, or sends the units to Workers, which
+ * create exactly the same worlds and send back their statistics.
+ */
+final class WorkUnit {
+    private final WorldConfig config;
+    private final String strategy;
+    private final String fileName;
+    private final OutputFormat format;
+    private final int window; // of the convergence detector
+    private final double tolerance; // of the convergence detector, 0 without one
+    private final boolean padding;
+
+    /**
+     * @param config the configuration of the run, without terrain cache
+     * @param strategy the name of the reproduction strategy of the run
+     * @param fileName the name of the output file of the run
+     * @param format the format of the output file
+     * @param detector a detector with the settings of the run, or null if it does not stop early
+     */
+    WorkUnit(WorldConfig config, String strategy, String fileName, OutputFormat format,
+             ConvergenceDetector detector) {
+        this(config, strategy, fileName, format,
+                detector != null ? detector.getWindow() : 0,
+                detector != null ? detector.getTolerance() : 0,
+                detector == null || detector.isPadding());
+    }
+
+    private WorkUnit(WorldConfig config, String strategy, String fileName, OutputFormat format,
+                     int window, double tolerance, boolean padding) {
+        this.config = config;
+        this.strategy = strategy;
+        this.fileName = fileName;
+        this.format = format;
+        this.window = window;
+        this.tolerance = tolerance;
+        this.padding = padding;
+    }
+
+    /**
+     * Creates the world of this unit. Only runs on a fixed terrain look it up in the cache,
+     * as every other run rolls a terrain of its own.
+     *
+     * @param terrainCache the terrain cache of the process creating the world
+     * @return the world, set up and ready to run
+     */
+    WorldWriter createWorld(TerrainCache terrainCache) {
+        if (config.hasTerrainSeed()) {
+            config.setTerrainCache(terrainCache);
+        }
+        WorldWriter world = new WorldWriter(config, SweepSpec.createStrategy(strategy), fileName, format);
+        if (tolerance > 0) {
+            world.setConvergenceDetector(new ConvergenceDetector(window, tolerance, padding));
+        }
+        return world;
+    }
+
+    /**
+     * Writes the result of the run of this unit, as readResult reads it.
+     *
+     * @throws IOException if the output cannot be written
+     */
+    static void writeResult(DataOutput out, RunResult result) throws IOException {
+        out.writeLong(result.getCpuNanos());
+        out.writeInt(result.getConvergenceTick());
+        result.getSeries().writeTo(out);
+    }
+
+    /**
+     * Reads the result of the run of this unit written by writeResult.
+     *
+     * @throws IOException if the input cannot be read
+     */
+    RunResult readResult(DataInput in) throws IOException {
+        long cpuNanos = in.readLong();
+        int convergenceTick = in.readInt();
+        StatisticsSeries series = StatisticsSeries.readFrom(in);
+        return new RunResult(fileName, format, config, strategy, series, convergenceTick, cpuNanos);
+    }
+
+    /**
+     * Writes this unit, as readFrom reads it: its length in bytes, then its content.
+     *
+     * @throws IOException if the output cannot be written
+     */
+    void writeTo(DataOutput out) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream content = new DataOutputStream(bytes);
+        content.writeUTF(strategy);
+        content.writeUTF(fileName);
+        content.writeUTF(format.name());
+        content.writeInt(window);
+        content.writeDouble(tolerance);
+        content.writeBoolean(padding);
+        config.writeTo(content);
+        out.writeInt(bytes.size());
+        out.write(bytes.toByteArray());
+    }
+
+    /**
+     * Reads a unit written by writeTo. The whole unit is read before its content is checked,
+     * so an invalid unit leaves the input at the next one.
+     *
+     * @throws IOException if the input cannot be read
+     * @throws IllegalArgumentException if the content read is not a valid unit
+     */
+    static WorkUnit readFrom(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Negative unit length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        DataInputStream content = new DataInputStream(new ByteArrayInputStream(bytes));
+        try {
+            String strategy = content.readUTF();
+            String fileName = content.readUTF();
+            OutputFormat format = OutputFormat.valueOf(content.readUTF());
+            int window = content.readInt();
+            double tolerance = content.readDouble();
+            boolean padding = content.readBoolean();
+            WorldConfig config = WorldConfig.readFrom(content);
+            return new WorkUnit(config, strategy, fileName, format, window, tolerance, padding);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid unit: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package world;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Worker simulates the WorkUnits of a coordinating Simulation in a process of its own.
+ *
+ * A worker talks to its coordinator over a pair of byte streams, its standard input and output
+ * when started with main. It announces itself with MAGIC and VERSION, then reads units one at a
+ * time, each preceded by its id, and answers each with the id, whether it succeeded, and then
+ * the CPU time and result of its run, or the reason it failed. A unit with an invalid content
+ * fails like a run that fails, and the worker goes on with the next. It stops at the end of its input.
+ * Nothing but answers is written to its output; anything printed goes to its standard error.
+ */
+public final class Worker {
+    static final int MAGIC = 0x57444357; // "WDCW"
+    static final int VERSION = 2; // 2: units are prefixed with their length
+
+    private Worker() {
+    }
+
+    /**
+     * Serves the coordinator on the standard streams of this process.
+     *
+     * @param args ignored
+     * @throws IOException if the coordinator cannot be talked to
+     */
+    public static void main(String[] args) throws IOException {
+        OutputStream results = new FileOutputStream(FileDescriptor.out);
+        System.setOut(System.err); // keep the output to answers
+        serve(System.in, results);
+    }
+
+    /**
+     * Serves a coordinator until the end of its input.
+     *
+     * @param input the stream of units from the coordinator
+     * @param output the stream of answers to the coordinator
+     * @throws IOException if the streams fail
+     */
+    static void serve(InputStream input, OutputStream output) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.flush();
+
+        TerrainCache terrainCache = new TerrainCache();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        while (true) {
+            int id;
+            try {
+                id = in.readInt();
+            } catch (EOFException e) {
+                return; // the coordinator is done
+            }
+            RunResult result;
+            try {
+                WorkUnit unit = WorkUnit.readFrom(in); // an invalid unit fails like its run would
+                long start = threads.getCurrentThreadCpuTime();
+                WorldWriter world = unit.createWorld(terrainCache);
+                world.runSimulation();
+                result = RunResult.of(world, threads.getCurrentThreadCpuTime() - start);
+            } catch (RuntimeException e) {
+                out.writeInt(id);
+                out.writeBoolean(false);
+                out.writeUTF(String.valueOf(e));
+                out.flush();
+                continue;
+            }
+            out.writeInt(id);
+            out.writeBoolean(true);
+            WorkUnit.writeResult(out, result);
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package world;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WorkerPool hands the WorkUnits of a Simulation to Worker processes and collects their results.
+ *
+ * Each worker is a process started with the given command and fed through its standard
+ * streams by a thread of the pool, one unit at a time, so a worker that finishes early takes
+ * the next unit. When a worker dies or stops answering sensibly, its unit goes back to the
+ * front of the queue for another worker and a new process takes its place. A unit that fails
+ * on MAX_ATTEMPTS workers in a row, or that a worker reports as failed, fails its future.
+ *
+ * Units are self-contained and deterministic, so the results do not depend on which worker
+ * ran them or how often they were retried.
+ */
+final class WorkerPool implements AutoCloseable {
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final List<String> command;
+    private final LinkedBlockingDeque<Task> queue = new LinkedBlockingDeque<>();
+    private final List<Thread> drivers = new ArrayList<>();
+    private final List<Process> processes = new ArrayList<>(); // every process started, for close
+    private int nextId;
+    private int restarts;
+    private volatile boolean closed;
+
+    /**
+     * Starts the threads feeding the workers. Each starts its worker on its first unit.
+     *
+     * @param size the number of workers
+     * @param command the command starting a worker process
+     * @throws IllegalArgumentException if size is not positive
+     */
+    WorkerPool(int size, List<String> command) {
+        if (size < 1) {
+            throw new IllegalArgumentException("A pool needs at least one worker, not " + size);
+        }
+        this.command = new ArrayList<>(command);
+        for (int i = 0; i < size; i++) {
+            Thread driver = new Thread(this::drive, "worker-" + i);
+            driver.setDaemon(true);
+            drivers.add(driver);
+            driver.start();
+        }
+    }
+
+    /**
+     * @return the command starting a worker on this machine, with the JVM and class path of this one
+     */
+    static List<String> localCommand() {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        return Arrays.asList(java, "-cp", System.getProperty("java.class.path"), Worker.class.getName());
+    }
+
+    /**
+     * Queues a unit for the next free worker.
+     *
+     * @param unit the run to simulate
+     * @return the result of the run once a worker has simulated it
+     */
+    synchronized Future<RunResult> submit(WorkUnit unit) {
+        if (closed) {
+            throw new IllegalStateException("The worker pool is closed");
+        }
+        Task task = new Task(nextId++, unit);
+        queue.addLast(task);
+        return task.result;
+    }
+
+    /**
+     * Feeds one worker until the pool is closed, replacing it whenever it dies.
+     */
+    private void drive() {
+        Connection worker = null;
+        while (!closed) {
+            Task task;
+            try {
+                task = queue.takeFirst();
+            } catch (InterruptedException e) {
+                break;
+            }
+            try {
+                if (worker == null) {
+                    worker = new Connection(start());
+                }
+                task.result.complete(worker.run(task));
+            } catch (IOException e) {
+                // the worker is gone or garbled its answer: drop it and let another worker retry
+                if (worker != null) {
+                    worker.process.destroyForcibly();
+                    worker = null;
+                    synchronized (this) {
+                        restarts++;
+                    }
+                }
+                if (closed) {
+                    task.result.completeExceptionally(new IllegalStateException("The worker pool was closed", e));
+                } else if (++task.attempts >= MAX_ATTEMPTS) {
+                    task.result.completeExceptionally(new IllegalStateException(
+                            "Unit " + task.id + " failed on " + task.attempts + " workers", e));
+                } else {
+                    queue.addFirst(task);
+                }
+            } catch (IllegalStateException e) {
+                task.result.completeExceptionally(e); // the run failed, it would on any worker
+            }
+        }
+        if (worker != null) {
+            worker.close();
+        }
+    }
+
+    private Process start() throws IOException {
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        Process process = builder.start();
+        synchronized (this) {
+            processes.add(process);
+        }
+        return process;
+    }
+
+    /**
+     * Stops every worker. Units not finished yet fail.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        for (Thread driver : drivers) {
+            driver.interrupt();
+        }
+        List<Process> started;
+        synchronized (this) {
+            started = new ArrayList<>(processes);
+        }
+        for (Process process : started) {
+            process.destroy();
+        }
+        for (Thread driver : drivers) {
+            try {
+                driver.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        for (Task task : queue) {
+            task.result.completeExceptionally(new IllegalStateException("The worker pool was closed"));
+        }
+    }
+
+    //--- Getter functions ---//
+
+    public int size() {
+        return drivers.size();
+    }
+
+    /**
+     * @return the number of workers that died and were replaced
+     */
+    public synchronized int getRestarts() {
+        return restarts;
+    }
+
+    /**
+     * Task is a queued unit with the future of its results.
+     */
+    private static final class Task {
+        private final int id;
+        private final WorkUnit unit;
+        private final CompletableFuture<RunResult> result = new CompletableFuture<>();
+        private int attempts;
+
+        private Task(int id, WorkUnit unit) {
+            this.id = id;
+            this.unit = unit;
+        }
+    }
+
+    /**
+     * Connection is the standard streams of a worker process, checked for the worker protocol.
+     */
+    private static final class Connection {
+        private final Process process;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        private Connection(Process process) throws IOException {
+            this.process = process;
+            this.in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+            if (in.readInt() != Worker.MAGIC || in.readInt() != Worker.VERSION) {
+                throw new IOException("Not a version " + Worker.VERSION + " worker");
+            }
+        }
+
+        /**
+         * Sends a unit and waits for its result.
+         *
+         * @throws IOException if the worker dies or answers something else
+         * @throws IllegalStateException if the worker reports that the run failed
+         */
+        private RunResult run(Task task) throws IOException {
+            out.writeInt(task.id);
+            task.unit.writeTo(out);
+            out.flush();
+            if (in.readInt() != task.id) {
+                throw new IOException("Answer to another unit than " + task.id);
+            }
+            if (!in.readBoolean()) {
+                throw new IllegalStateException("Unit " + task.id + " failed in its worker: " + in.readUTF());
+            }
+            return task.unit.readResult(in);
+        }
+
+        /**
+         * Ends the input of the worker, which then stops.
+         */
+        private void close() {
+            try {
+                out.close();
+                process.waitFor(10, TimeUnit.SECONDS);
+            } catch (IOException e) {
+                // it is stopping anyway
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                process.destroy();
+            }
+        }
+    }
+}
@@ -5,23 +5,45 @@
 
 package world;
 
-import java.util.ArrayList;
-import java.util.List;
+import metrics.Metrics;
+import metrics.Phase;
+import metrics.TickProbe;
 import person.Person;
 import person.strategy.ReproductionStrategy;
+import stats.ConvergenceDetector;
+import stats.WealthStatistics;
 import util.Params;
+import util.RandomSource;
+
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
 
 public class World {
-    public static final int maxCoord = 51; //not a parameter; determines max size of map
-    private Patch[][] map; 
-    private List<Person> people;
+    static final int DIFFUSION_PASSES = 15; // number of times grain is spread when the terrain is set up
+
+    private final WorldConfig config;
+    private Grid grid;
+    private Population people;
     private ReproductionStrategy strategy;
     private int numPeople;
     private int grainGrowthRate;
+    private int[] wealthBuffer = new int[0]; // scratch space for computing statistics
+    private final long seed;
+    private final RandomSource terrainRandom; // stream used only to generate the patches
+    private final RandomSource random; // stream used for people and reproduction
+    private int nextPersonId;
+    private int tick; // the next tick to simulate
+    private WorldObserver[] observers = new WorldObserver[0];
+    private ConvergenceDetector convergence; // null unless runs may stop once stationary
+    private int convergenceTick = -1;
 
 
     /**
-     * Constructor to initialize the world with a specified reproduction strategy.
+     * Constructor to initialize the world with a specified reproduction strategy
+     * and an arbitrary seed.
      * Sets up the patches and people on the map.
      *
      * @param numPeople the number of people to place on the map
@@ -29,36 +51,143 @@ public class World {
      * @param strategy the reproduction strategy to use for the simulation
      */
     public World(int numPeople, int grainGrowthRate, ReproductionStrategy strategy) {
-        this.people = new ArrayList<>();
+        this(numPeople, grainGrowthRate, strategy, System.nanoTime());
+    }
+
+    /**
+     * Constructor to initialize the world with a specified reproduction strategy.
+     * Sets up the patches and people on the map. Every random draw of the run
+     * comes from the given seed, so the same seed replays the same run.
+     *
+     * @param numPeople the number of people to place on the map
+     * @param grainGrowthRate the interval at which grain grows on patches
+     * @param strategy the reproduction strategy to use for the simulation
+     * @param seed the seed of the random source of this world
+     */
+    public World(int numPeople, int grainGrowthRate, ReproductionStrategy strategy, long seed) {
+        this(new WorldConfig(numPeople, grainGrowthRate, seed), strategy);
+    }
+
+    /**
+     * Constructor to initialize the world from a configuration, which also
+     * sets the size and layout of the map and the length of the run.
+     * Sets up the patches and people on the map.
+     *
+     * @param config the parameters of this world
+     * @param strategy the reproduction strategy to use for the simulation
+     * @throws IllegalArgumentException if the configuration is invalid
+     */
+    public World(WorldConfig config, ReproductionStrategy strategy) {
+        config.validate();
+        RandomSource root = new RandomSource(config.getSeed());
+        this.config = config;
+        this.seed = config.getSeed();
+        RandomSource terrainRoot = root.split();
+        this.terrainRandom = config.hasTerrainSeed() ? new RandomSource(config.getTerrainSeed()).split() : terrainRoot;
+        this.random = root.split();
+        this.people = new Population(config.getNumPeople(), this);
         this.strategy = strategy;
-        this.numPeople = numPeople;
-        this.grainGrowthRate = grainGrowthRate;
+        this.numPeople = config.getNumPeople();
+        this.grainGrowthRate = config.getGrainGrowthRate();
         setupPatches();
         setupPeople();
 
     }
 
+    /**
+     * Constructor to restore a world from a checkpoint. The restored world continues
+     * exactly as the saved one would have, here with the given reproduction strategy.
+     *
+     * @param checkpoint the saved state of a world
+     * @param strategy the reproduction strategy to use from the checkpoint on
+     */
+    public World(WorldCheckpoint checkpoint, ReproductionStrategy strategy) {
+        this(checkpoint, strategy, null);
+    }
+
+    /**
+     * Constructor to fork a world from a checkpoint. The people of the restored world draw
+     * from a new stream seeded with the given seed, so forks with different seeds diverge
+     * from the same starting state.
+     *
+     * @param checkpoint the saved state of a world
+     * @param strategy the reproduction strategy to use from the checkpoint on
+     * @param forkSeed the seed of the random source of the people from the checkpoint on
+     */
+    public World(WorldCheckpoint checkpoint, ReproductionStrategy strategy, long forkSeed) {
+        this(checkpoint, strategy, Long.valueOf(forkSeed));
+    }
+
+    private World(WorldCheckpoint checkpoint, ReproductionStrategy strategy, Long forkSeed) {
+        try (DataInputStream in = checkpoint.open()) {
+            this.config = WorldConfig.readFrom(in);
+            this.tick = in.readInt();
+            this.nextPersonId = in.readInt();
+            this.terrainRandom = RandomSource.readFrom(in);
+            RandomSource saved = RandomSource.readFrom(in);
+            this.random = forkSeed == null ? saved : new RandomSource(forkSeed);
+            this.grid = Grid.readFrom(in, config.getWidth(), config.getHeight(), config.getLayout());
+            int numSaved = in.readInt();
+            this.people = new Population(Math.max(numSaved, config.getNumPeople()), this);
+            for (int i = 0; i < numSaved; i++) {
+                people.add(Person.readFrom(this, in));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not restore the world from its checkpoint", e);
+        }
+        this.seed = config.getSeed();
+        this.strategy = strategy;
+        this.numPeople = config.getNumPeople();
+        this.grainGrowthRate = config.getGrainGrowthRate();
+    }
+
+    /**
+     * Writes the complete state of this world, as read back by the checkpoint constructors.
+     *
+     * @param out the output to write to
+     * @throws IOException if the output cannot be written
+     */
+    void writeState(DataOutput out) throws IOException {
+        config.writeTo(out);
+        out.writeInt(tick);
+        out.writeInt(nextPersonId);
+        terrainRandom.writeTo(out);
+        random.writeTo(out);
+        grid.writeTo(out);
+        out.writeInt(people.size());
+        for (int i = 0; i < people.size(); i++) {
+            people.get(i).writeTo(out);
+        }
+    }
+
+    /**
+     * Captures the current state of this world, which must not be running a tick.
+     *
+     * @return the checkpoint of this world
+     */
+    public WorldCheckpoint checkpoint() {
+        return WorldCheckpoint.of(this);
+    }
+
     //--- Setup functions ---//
 
     /**
-     * Initializes people by placing them randomly on patches of the map.
+     * Initializes people by placing them randomly on empty patches of the map.
      * Ensures no two people occupy the same patch at setup.
+     *
+     * @throws IllegalArgumentException if there are more people than patches
      */
     public void setupPeople() {
+        if (numPeople > grid.size()) {
+            throw new IllegalArgumentException("Cannot place " + numPeople + " people on "
+                    + grid.size() + " patches");
+        }
         people.clear();
         for (int i = 0; i < this.numPeople; i++) {
-            int x, y;
-            Patch patch;
-
-            // This guarantees that the new person will be added
-            do {
-                x = Params.rollCoord();
-                y = Params.rollCoord();
-                patch = map[x][y];
-            } while (patch.getPerson() != null);
+            int cell = grid.randomFreeCell(random);
             Person person = new Person(this);
-            person.setPatch(patch);
-            patch.setPerson(person);
+            person.setCell(cell);
+            grid.setOccupant(cell, person.getId());
             people.add(person);
         }
     }
@@ -66,137 +195,315 @@ public class World {
     /**
      * Initializes the map with patches of varying grain productivity.
      * Performs multiple diffusion steps to spread grain and then sets
-     * the maximum grain levels for each patch.
+     * the maximum grain levels for each patch. If the configuration has a
+     * terrain cache, a terrain set up before is reused from it.
      */
     public void setupPatches() {
+        TerrainCache cache = config.getTerrainCache();
+        this.grid = cache == null ? createTerrain() : cache.gridFor(config, this::createTerrain);
+    }
+
+    private Grid createTerrain() {
         // Initial creation of patches
-        this.map = new Patch[maxCoord][maxCoord];
-        for (int x = 0; x<maxCoord; x++) {
-            for (int y = 0; y<maxCoord; y++) {
-                map[x][y] = new Patch(x, y);
-            }
+        Grid grid = new Grid(config.getWidth(), config.getHeight(), config.getLayout(),
+                terrainRandom, config.getPercentBestLand());
+
+        // Spreads the grain around the map, then continues to spread it
+        // around without topping up the original supply
+        grid.diffuse(DIFFUSION_PASSES, config.isSequentialDiffusion());
+
+        // Sets the current grain amount as the maximum for each patch
+        grid.floorGrainToMax();
+        return grid;
+    }
+
+    /**
+     * Computes the wealth statistics of all people in the simulation.
+     * The wealth values are gathered into a reusable primitive buffer, so a
+     * sample allocates nothing but the returned snapshot.
+     *
+     * @return the statistics of the current population
+     */
+    protected WealthStatistics computeStatistics() {
+        int n = people.size();
+        if (wealthBuffer.length < n) {
+            wealthBuffer = new int[n];
+        }
+        for (int i = 0; i < n; i++) {
+            wealthBuffer[i] = people.get(i).getWealth();
         }
+        return WealthStatistics.of(wealthBuffer, n);
+    }
 
-        // Spreads the grain around the map tops up the best grain patches
-        for (int k=0; k<5; k++) {
-            for (int i = 0; i<maxCoord; i++) {
-                for (int j = 0; j<maxCoord; j++) {
-                    if (map[i][j].getMaxGrain() != 0) {
-                        map[i][j].setGrain(map[i][j].getGrain());
-                    }
-                }
+    //--- Observer functions ---//
+
+    /**
+     * Adds an observer, which is notified after the observers added before it.
+     *
+     * @param observer the observer to notify from now on
+     */
+    public void addObserver(WorldObserver observer) {
+        observers = Arrays.copyOf(observers, observers.length + 1);
+        observers[observers.length - 1] = observer;
+    }
+
+    /**
+     * Removes an observer.
+     *
+     * @param observer the observer to stop notifying
+     * @return whether the observer was observing this world
+     */
+    public boolean removeObserver(WorldObserver observer) {
+        for (int i = 0; i < observers.length; i++) {
+            if (observers[i] == observer) {
+                WorldObserver[] remaining = new WorldObserver[observers.length - 1];
+                System.arraycopy(observers, 0, remaining, 0, i);
+                System.arraycopy(observers, i + 1, remaining, i, remaining.length - i);
+                observers = remaining;
+                return true;
             }
-            diffusePatches();
         }
+        return false;
+    }
 
-        // Continue to spread grain around without topping up the original supply
-        for (int k=0; k<10; k++) {
-            diffusePatches();
+    /**
+     * Reports the end of a tick, with the statistics of the population every
+     * PRINT_WRITE_INTERVAL ticks, and hands those to the convergence detector.
+     * Without observers or detector, nothing is computed.
+     */
+    private void reportTick(int tick) {
+        if (observers.length == 0 && convergence == null) {
+            return;
         }
-
-        // Sets the current grain amount as the maximum for each patch
-        for (int i = 0; i<maxCoord; i++) {
-            for (int j = 0; j<maxCoord; j++) {
-                map[i][j].floorGrain();
-                map[i][j].setMaxGrain();
+        if (tick % Params.PRINT_WRITE_INTERVAL == 0) {
+            WealthStatistics stats = computeStatistics();
+            for (WorldObserver observer : observers) {
+                observer.onSample(this, tick, stats);
             }
-        }  
-    }
-    
-    // Causes diffusal in all grains in the map
-    public void diffusePatches() {
-        for (int i = 0; i<maxCoord; i++) {
-            for (int j = 0; j<maxCoord; j++) {
-                map[i][j].diffuse(map);
+            if (convergence != null && convergence.add(stats)) {
+                convergenceTick = tick;
             }
         }
+        for (WorldObserver observer : observers) {
+            observer.onTick(this, tick);
+        }
     }
 
     /**
-     * Prints statistical information about the wealth distribution
-     * of all people in the simulation at the specified tick.
-     * Calculates total, numbers of each class, as well as Gini coefficient.
-     *
-     * @param tick the current simulation tick at which statistics are printed
+     * Reports that a person died and a newborn took their place, called by the population.
      */
-    protected void printStatistics(int tick) {
-        double totalWealth = people.stream().mapToDouble(Person::getWealth).sum();
-        double maxWealth = people.stream().mapToDouble(Person::getWealth).max().orElse(0);
-        double avgWealth = totalWealth / people.size();
-
-        double meanDiff = 0;
-        int numLowerClass = 0;
-        int numMiddleClass = 0;
-        int numUpperClass = 0;
-        double oneThird = (1.0 / 3) * maxWealth;
-        double twoThirds = (2.0 / 3) * maxWealth;
+    void reportReplaced(Person dead, Person newborn) {
+        for (WorldObserver observer : observers) {
+            observer.onDeath(this, dead);
+            observer.onBirth(this, newborn);
+        }
+    }
 
+    /**
+     * Reports that a person left the population without a replacement, called by the population.
+     */
+    void reportRemoved(Person dead) {
+        for (WorldObserver observer : observers) {
+            observer.onDeath(this, dead);
+        }
+    }
 
-        for (Person p1 : people) {
-            double wealth = p1.getWealth();
+    //--- Simulation functions ---//
 
-            if (wealth <= oneThird) {
-                numLowerClass++;
-            } else if (wealth <= twoThirds) {
-                numMiddleClass++;
-            } else {
-                numUpperClass++;
+    /**
+     * Runs the simulation loop for the world, from its current tick to the last one.
+     * On each tick, replenishes grain on patches at intervals,
+     * lets each person act according to the reproduction strategy,
+     * and periodically reports statistics to the observers.
+     *
+     * With a convergence detector, the run stops at the first sample that makes the window of
+     * the detector stationary. If the detector pads, the steady state is then reported as the
+     * sample of every remaining sample tick, so the run has the samples of a full run.
+     */
+    public void runSimulation() {
+        for (WorldObserver observer : observers) {
+            observer.onRunStart(this);
+        }
+        int endTick = config.getMaxTick() + 1;
+        advanceTo(endTick);
+        if (convergenceTick >= 0) {
+            for (WorldObserver observer : observers) {
+                observer.onConverged(this, convergenceTick);
             }
+            if (convergence.isPadding()) {
+                padSamples(endTick);
+            }
+        }
+        for (WorldObserver observer : observers) {
+            observer.onRunEnd(this);
+        }
+    }
 
-            for (Person p2 : people) {
-                meanDiff += Math.abs(p1.getWealth() - p2.getWealth());
+    /**
+     * Reports the steady state as the sample of every sample tick the run skipped,
+     * stepping through the ticks as runTicks does.
+     */
+    private void padSamples(int endTick) {
+        WealthStatistics steadyState = convergence.getSteadyState();
+        for (int skipped = tick; skipped < endTick; skipped += 2) {
+            if (skipped % Params.PRINT_WRITE_INTERVAL == 0) {
+                for (WorldObserver observer : observers) {
+                    observer.onSample(this, skipped, steadyState);
+                }
             }
         }
-        double gini = meanDiff / (2 * people.size() * people.size() * avgWealth);
+    }
 
-        System.out.printf("Tick %d: Total Wealth = %.2f, Gini = %.4f, Low = %d, Middle = %d, Upper = %d%n",
-                tick, totalWealth, gini, numLowerClass, numMiddleClass, numUpperClass);
-        
+    /**
+     * Runs the simulation loop until the given tick, which is not simulated,
+     * e.g. to burn a world in before taking a checkpoint. A world that has converged
+     * simulates no further.
+     *
+     * @param endTick the tick to stop at, at most one past the last tick of the run
+     */
+    public void advanceTo(int endTick) {
+        ParallelTicker ticker = null;
+        if (config.getTickThreads() > 0) {
+            ticker = new ParallelTicker(this, config.getTickThreads());
+            if (config.getMaxVision() >= Person.INDEXED_VISION) {
+                // build the grain index before any concurrent query needs it
+                grid.getGrainIndex();
+            }
+        }
+        try {
+            runTicks(ticker, Math.min(endTick, config.getMaxTick() + 1));
+        } finally {
+            if (ticker != null) {
+                ticker.shutdown();
+            }
+        }
     }
 
     /**
-     * Runs the simulation loop for the world.
-     * On each tick, replenishes grain on patches at intervals,
-     * lets each person act according to the reproduction strategy,
-     * and periodically prints statistics.
+     * Runs the ticks of the simulation from the current one until the given tick,
+     * advancing people with the given ticker or one after another if there is none.
+     *
+     * @param ticker the parallel ticker of this run, or null for the sequential tick
+     * @param endTick the tick to stop at
      */
-    public void runSimulation() {
-        System.out.println("Starting Wealth Distribution Simulation, " + strategy);
+    private void runTicks(ParallelTicker ticker, int endTick) {
+        TickProbe probe = Metrics.ENABLED ? new TickProbe(seed) : null;
         // Simulation loop
-        for (int tick = 0; tick < Params.MAX_TICK+1; tick++) {
+        for (; tick < endTick && convergenceTick < 0; tick++) {
+            if (Metrics.ENABLED) {
+                probe.startTick(tick, nextPersonId, people.size());
+            }
 
             // Grain grows
             if (tick % this.grainGrowthRate == 0) {
-                for (Patch[] row : map) {
-                    for (Patch patch : row) {
-                        // Grain grows
-                        patch.grow();
-                    }
-                }
+                grid.grow();
+            }
+            if (Metrics.ENABLED) {
+                probe.lap(Phase.GROW);
             }
 
-            // Make copy to avoid concurrent modification
-            List<Person> tmpPeople = new ArrayList<>(this.people);
-            for (Person agent : tmpPeople) {
-                agent.tick(strategy);
+            if (ticker != null) {
+                ticker.tick(tick, strategy, probe);
+            } else if (Metrics.ENABLED) {
+                tickPeople(probe);
+            } else {
+                // Strategies replace the dead in their own slot, so only the people
+                // alive at the start of the tick are visited
+                int numAgents = people.size();
+                for (int i = 0; i < numAgents; i++) {
+                    people.get(i).tick(strategy);
+                }
             }
 
-            // Print statistics every 100 ticks
-            if (tick % Params.PRINT_WRITE_INTERVAL == 0) {
-                printStatistics(tick);
+            // Report statistics every PRINT_WRITE_INTERVAL ticks
+            reportTick(tick);
+            if (Metrics.ENABLED) {
+                probe.lap(Phase.STATISTICS);
+                probe.endTick(nextPersonId, people.size());
             }
             tick++;
 
         }
+        if (Metrics.ENABLED) {
+            probe.flush();
+        }
+    }
+
+    /**
+     * Advances every person alive at the start of the tick one after another, as the
+     * sequential tick does, timing the steps of Person.tick separately.
+     */
+    private void tickPeople(TickProbe probe) {
+        int numAgents = people.size();
+        for (int i = 0; i < numAgents; i++) {
+            Person person = people.get(i);
+            person.moveTo(person.proposeMove());
+            probe.lap(Phase.MOVE);
+            person.harvest();
+            probe.lap(Phase.HARVEST);
+            strategy.reproduce(person, this);
+            probe.lap(Phase.REPRODUCE);
+        }
     }
 
     //--- Getter and setter functions ---//
 
-    public Patch[][] getMap() {
-        return map;
+    public WorldConfig getConfig() {
+        return config;
     }
 
-    public List<Person> getPeople() {
+    public ReproductionStrategy getStrategy() {
+        return strategy;
+    }
+
+    public Grid getGrid() {
+        return grid;
+    }
+
+    public Population getPopulation() {
         return this.people;
     }
+
+    public RandomSource getRandom() {
+        return random;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return the next tick this world will simulate
+     */
+    public int getTick() {
+        return tick;
+    }
+
+    /**
+     * Lets the run stop early once its samples are stationary, as judged by the given detector.
+     * A detector watches a single run, so each world needs its own.
+     *
+     * @param detector the detector of this world, or null to always run to the last tick
+     */
+    public void setConvergenceDetector(ConvergenceDetector detector) {
+        this.convergence = detector;
+    }
+
+    public ConvergenceDetector getConvergenceDetector() {
+        return convergence;
+    }
+
+    /**
+     * @return the tick of the sample at which the run converged, or -1 if it has not
+     */
+    public int getConvergenceTick() {
+        return convergenceTick;
+    }
+
+    /**
+     * @return a new id, unique among all people ever created in this world
+     */
+    public int nextPersonId() {
+        return nextPersonId++;
+    }
 }
\ No newline at end of file
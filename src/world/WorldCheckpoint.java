@@ -0,0 +1,119 @@
+package world;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * WorldCheckpoint is the complete state of a world between two ticks: its configuration,
+ * the next tick, both random streams, the grain, maximum grain and occupant of every patch,
+ * the free patches and every attribute of every person.
+ *
+ * A checkpoint is held in memory as a compact binary image, so many worlds can be restored
+ * from it without touching the disk again, and it can be written to and read from a file.
+ * A world restored from a checkpoint continues exactly as the saved world would have.
+ */
+public final class WorldCheckpoint {
+    private static final int MAGIC = 0x57444350; // "WDCP"
+    private static final int VERSION = 2;
+
+    private final byte[] state;
+    private final int tick;
+
+    private WorldCheckpoint(byte[] state) throws IOException {
+        this.state = state;
+        DataInputStream in = open();
+        WorldConfig.readFrom(in); // rejects an invalid configuration up front
+        this.tick = in.readInt();
+    }
+
+    /**
+     * Captures the current state of a world.
+     *
+     * @param world the world to save, which must not be running a tick
+     * @return the checkpoint of the world
+     */
+    public static WorldCheckpoint of(World world) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            world.writeState(out);
+            return new WorldCheckpoint(bytes.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not capture the world", e); // memory streams do not fail
+        }
+    }
+
+    /**
+     * Reads a checkpoint file written by write.
+     *
+     * @param path the checkpoint file
+     * @return the checkpoint it holds
+     * @throws IOException if the file cannot be read or is not a checkpoint
+     */
+    public static WorldCheckpoint read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(path + " is not a version " + VERSION + " world checkpoint");
+            }
+            byte[] state = new byte[in.readInt()];
+            in.readFully(state);
+            return new WorldCheckpoint(state);
+        }
+    }
+
+    /**
+     * Writes this checkpoint to a file, replacing it if it exists.
+     *
+     * @param path the checkpoint file
+     * @throws IOException if the file cannot be written
+     */
+    public void write(Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(state.length);
+            out.write(state);
+        }
+    }
+
+    /**
+     * @return a stream over the saved state, starting with the configuration
+     */
+    DataInputStream open() {
+        return new DataInputStream(new ByteArrayInputStream(state));
+    }
+
+    //--- Getter functions ---//
+
+    /**
+     * @return a copy of the configuration of the saved world
+     */
+    public WorldConfig getConfig() {
+        try {
+            return WorldConfig.readFrom(open());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // it was read once already
+        }
+    }
+
+    /**
+     * @return the tick the saved world would run next
+     */
+    public int getTick() {
+        return tick;
+    }
+
+    /**
+     * @return the size of the saved state in bytes
+     */
+    public int size() {
+        return state.length;
+    }
+}
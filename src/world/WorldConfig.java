@@ -0,0 +1,302 @@
+package world;
+
+import util.Params;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * WorldConfig holds the parameters of a single world: its population, grain growth,
+ * ranges of the traits of people, dimensions, memory layout, terrain, length of the run and random seed.
+ *
+ * Parameters that are not set keep the defaults defined in Params, so a configuration
+ * only needs to state what differs from the standard model.
+ */
+public class WorldConfig {
+    private int numPeople;
+    private int grainGrowthRate;
+    private long seed;
+    private int width = Params.WORLD_SIZE;
+    private int height = Params.WORLD_SIZE;
+    private CellLayout layout = CellLayout.ROW_MAJOR;
+    private int maxTick = Params.MAX_TICK;
+    private int maxVision = Params.MAX_VISION;
+    private int maxMetabolism = Params.MAX_METABOLISM;
+    private int minLife = Params.MIN_LIFE;
+    private int maxLife = Params.MAX_LIFE;
+    private int tickThreads = 0; // 0 for the sequential tick
+    private boolean sequentialDiffusion = false;
+    private int percentBestLand = Params.PERCENT_BEST_LAND;
+    private boolean fixedTerrain = false; // whether the terrain comes from terrainSeed rather than seed
+    private long terrainSeed;
+    private TerrainCache terrainCache; // not part of the saved parameters
+
+    /**
+     * Constructs a configuration of a standard sized world.
+     *
+     * @param numPeople the number of people to place on the map
+     * @param grainGrowthRate the interval at which grain grows on patches
+     * @param seed the seed of the random source of the world
+     */
+    public WorldConfig(int numPeople, int grainGrowthRate, long seed) {
+        this.numPeople = numPeople;
+        this.grainGrowthRate = grainGrowthRate;
+        this.seed = seed;
+    }
+
+    /**
+     * Checks that the parameters describe a world that can be simulated.
+     *
+     * @throws IllegalArgumentException if any parameter is out of range
+     */
+    public void validate() {
+        if (maxVision < 1 || maxMetabolism < 1 || minLife < 1 || maxLife < minLife) {
+            throw new IllegalArgumentException("Invalid maximum vision " + maxVision + ", maximum metabolism "
+                    + maxMetabolism + " or lifespan " + minLife + "-" + maxLife);
+        }
+        if (width < maxVision || height < maxVision) {
+            // people see around the edges of the world at most once
+            throw new IllegalArgumentException("The world must be at least " + maxVision
+                    + " patches wide and high, not " + width + "x" + height);
+        }
+        if ((long) width * height > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("The world is too large: " + width + "x" + height);
+        }
+        if (percentBestLand < 0 || percentBestLand > 100) {
+            throw new IllegalArgumentException("Invalid percentage of best land: " + percentBestLand);
+        }
+        if (tickThreads < 0) {
+            throw new IllegalArgumentException("Invalid number of tick threads: " + tickThreads);
+        }
+        if (numPeople < 0 || grainGrowthRate < 1 || maxTick < 0) {
+            throw new IllegalArgumentException("Invalid population " + numPeople + ", growth interval "
+                    + grainGrowthRate + " or maximum tick " + maxTick);
+        }
+    }
+
+    /**
+     * Writes every parameter of this configuration, except for the terrain cache.
+     *
+     * @param out the output to write to
+     * @throws IOException if the output cannot be written
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(numPeople);
+        out.writeInt(grainGrowthRate);
+        out.writeLong(seed);
+        out.writeInt(width);
+        out.writeInt(height);
+        out.writeUTF(layout.name());
+        out.writeInt(maxTick);
+        out.writeInt(maxVision);
+        out.writeInt(maxMetabolism);
+        out.writeInt(minLife);
+        out.writeInt(maxLife);
+        out.writeInt(tickThreads);
+        out.writeBoolean(sequentialDiffusion);
+        out.writeInt(percentBestLand);
+        out.writeBoolean(fixedTerrain);
+        out.writeLong(terrainSeed);
+    }
+
+    /**
+     * Reads a configuration saved by writeTo.
+     *
+     * @param in the input to read from
+     * @return the saved configuration
+     * @throws IOException if the input cannot be read or holds an invalid configuration
+     */
+    public static WorldConfig readFrom(DataInput in) throws IOException {
+        WorldConfig config = new WorldConfig(in.readInt(), in.readInt(), in.readLong());
+        config.setSize(in.readInt(), in.readInt());
+        try {
+            config.setLayout(CellLayout.valueOf(in.readUTF()));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown cell layout", e);
+        }
+        config.setMaxTick(in.readInt());
+        config.setMaxVision(in.readInt());
+        config.setMaxMetabolism(in.readInt());
+        config.setLifespan(in.readInt(), in.readInt());
+        config.setTickThreads(in.readInt());
+        config.setSequentialDiffusion(in.readBoolean());
+        config.setPercentBestLand(in.readInt());
+        boolean fixedTerrain = in.readBoolean();
+        long terrainSeed = in.readLong();
+        if (fixedTerrain) {
+            config.setTerrainSeed(terrainSeed);
+        }
+        try {
+            config.validate();
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid configuration: " + e.getMessage(), e);
+        }
+        return config;
+    }
+
+    //--- Getter and setter functions ---//
+
+    public int getNumPeople() {
+        return numPeople;
+    }
+
+    public void setNumPeople(int numPeople) {
+        this.numPeople = numPeople;
+    }
+
+    public int getGrainGrowthRate() {
+        return grainGrowthRate;
+    }
+
+    public void setGrainGrowthRate(int grainGrowthRate) {
+        this.grainGrowthRate = grainGrowthRate;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public void setSize(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    public CellLayout getLayout() {
+        return layout;
+    }
+
+    public void setLayout(CellLayout layout) {
+        this.layout = layout;
+    }
+
+    public int getMaxTick() {
+        return maxTick;
+    }
+
+    public void setMaxTick(int maxTick) {
+        this.maxTick = maxTick;
+    }
+
+    public int getMaxVision() {
+        return maxVision;
+    }
+
+    public void setMaxVision(int maxVision) {
+        this.maxVision = maxVision;
+    }
+
+    public int getMaxMetabolism() {
+        return maxMetabolism;
+    }
+
+    public void setMaxMetabolism(int maxMetabolism) {
+        this.maxMetabolism = maxMetabolism;
+    }
+
+    public int getMinLife() {
+        return minLife;
+    }
+
+    public int getMaxLife() {
+        return maxLife;
+    }
+
+    public void setLifespan(int minLife, int maxLife) {
+        this.minLife = minLife;
+        this.maxLife = maxLife;
+    }
+
+    public boolean isSequentialDiffusion() {
+        return sequentialDiffusion;
+    }
+
+    /**
+     * Selects how grain is diffused when the terrain is set up. By default every patch
+     * diffuses at the same time, which can run in parallel. The sequential mode diffuses
+     * one patch after another, reproducing the terrain of earlier versions of this model.
+     *
+     * @param sequentialDiffusion whether to diffuse patches one after another
+     */
+    public void setSequentialDiffusion(boolean sequentialDiffusion) {
+        this.sequentialDiffusion = sequentialDiffusion;
+    }
+
+    public int getPercentBestLand() {
+        return percentBestLand;
+    }
+
+    public void setPercentBestLand(int percentBestLand) {
+        this.percentBestLand = percentBestLand;
+    }
+
+    /**
+     * @return the seed the terrain is rolled from: the terrain seed if one was set,
+     *         otherwise the seed of the world
+     */
+    public long getTerrainSeed() {
+        return fixedTerrain ? terrainSeed : seed;
+    }
+
+    public boolean hasTerrainSeed() {
+        return fixedTerrain;
+    }
+
+    /**
+     * Rolls the terrain from its own seed instead of the seed of the world. Worlds with
+     * the same terrain seed, size, layout and terrain parameters have the same patches,
+     * while their people still follow their own seeds, so runs can be compared on a
+     * common terrain. With the terrain seed equal to the seed, the world is the same as
+     * without one.
+     *
+     * @param terrainSeed the seed the terrain is rolled from
+     */
+    public void setTerrainSeed(long terrainSeed) {
+        this.fixedTerrain = true;
+        this.terrainSeed = terrainSeed;
+    }
+
+    public TerrainCache getTerrainCache() {
+        return terrainCache;
+    }
+
+    /**
+     * Sets the cache the world looks its terrain up in, so that worlds on the same terrain
+     * set it up once. The cache only saves time: a world gets the same patches with or
+     * without it.
+     *
+     * @param terrainCache the cache to use, or null to always set up the terrain
+     */
+    public void setTerrainCache(TerrainCache terrainCache) {
+        this.terrainCache = terrainCache;
+    }
+
+    public int getTickThreads() {
+        return tickThreads;
+    }
+
+    /**
+     * Selects how people are advanced each tick. With 0 threads, people act one after
+     * another and each sees the moves of those before them, as in the NetLogo model.
+     * With one or more threads, people propose moves in parallel on the state at the start
+     * of the tick and conflicts are resolved by a seeded priority; for a given seed this
+     * gives the same run whatever the number of threads.
+     *
+     * @param tickThreads the number of threads, or 0 for the sequential tick
+     */
+    public void setTickThreads(int tickThreads) {
+        this.tickThreads = tickThreads;
+    }
+}
@@ -0,0 +1,78 @@
+package world;
+
+import person.Person;
+import stats.WealthStatistics;
+
+/**
+ * WorldObserver is notified of what happens in a world while it runs.
+ *
+ * A world has no observers to begin with and then reports nothing, not even its statistics,
+ * which it only computes when someone observes it. The statistics of a sample are computed
+ * once and handed to every observer. All methods are called on the thread running the world,
+ * in the order the observers were added, and do nothing by default.
+ */
+public interface WorldObserver {
+
+    /**
+     * Called when runSimulation starts.
+     *
+     * @param world the world starting its run
+     */
+    default void onRunStart(World world) {
+    }
+
+    /**
+     * Called after each tick, once its sample if any has been reported.
+     *
+     * @param world the world that ticked
+     * @param tick the tick just simulated
+     */
+    default void onTick(World world, int tick) {
+    }
+
+    /**
+     * Called every Params.PRINT_WRITE_INTERVAL ticks with the wealth statistics of the population.
+     *
+     * @param world the world sampled
+     * @param tick the tick just simulated
+     * @param stats the statistics of the population at the end of that tick
+     */
+    default void onSample(World world, int tick, WealthStatistics stats) {
+    }
+
+    /**
+     * Called when a person joins the population during the run.
+     *
+     * @param world the world of the person
+     * @param person the newborn, already placed on their patch
+     */
+    default void onBirth(World world, Person person) {
+    }
+
+    /**
+     * Called when a person leaves the population during the run, before their replacement is born.
+     *
+     * @param world the world of the person
+     * @param person the person who died
+     */
+    default void onDeath(World world, Person person) {
+    }
+
+    /**
+     * Called when runSimulation stops early because the samples became stationary, before
+     * the steady state is reported for the samples skipped if the detector pads.
+     *
+     * @param world the world that converged
+     * @param tick the tick of the sample at which it converged
+     */
+    default void onConverged(World world, int tick) {
+    }
+
+    /**
+     * Called when runSimulation has simulated the last tick, or stopped once converged.
+     *
+     * @param world the world ending its run
+     */
+    default void onRunEnd(World world) {
+    }
+}
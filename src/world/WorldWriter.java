@@ -1,129 +1,254 @@
 package world;
 
-import person.Person;
+import metrics.Metrics;
+import metrics.Phase;
 import person.strategy.ReproductionStrategy;
+import stats.StatisticsSeries;
 
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.List;
-import java.io.BufferedWriter;
-import java.io.FileWriter;
-import java.io.IOException;
+import java.util.Locale;
 
 /**
  * WorldWriter extends the World class to add functionality for writing
- * simulation statistics to a CSV file. It maintains a BufferedWriter to
- * output wealth distribution statistics for each simulation tick.
+ * simulation statistics to a file, as CSV rows or as a binary run block.
+ * The statistics of a run are recorded in memory by a SeriesObserver and handed to a ResultSink in one
+ * go by writeResults, so worlds can run concurrently without interleaving their
+ * rows in a shared file.
+ *
+ * CSV rows are formatted by hand rather than with String.format, producing exactly
+ * the text of the format "%d, %.2f, %.4f, %d, %d, %d" in the root locale.
  */
 public class WorldWriter extends World {
-    private static String outputPath = "stat";
-    private BufferedWriter writer;
-    private String fileName;
-    private Path filePath;
+    private static final long[] POWERS_OF_TEN = {1, 10, 100, 1_000, 10_000};
+    private static final double MAX_FAST_WHOLE = 1e13; // whole values below this scale exactly into a long
+    private static final double MAX_FAST_SCALED = 1e9; // scaled values up to here keep ample fraction precision
+    private static final double TIE_MARGIN = 1e-5; // fractions this close to one half are left to String.format
+    static final long NO_UNITS = Long.MIN_VALUE; // fixedUnits of a value whose text is no whole number of units
+
+    private final StatisticsSeries series;
+    private final String fileName;
+    private final OutputFormat format;
 
     /**
      * Constructs a WorldWriter instance.
-     * Initializes the world simulation and prepares the CSV file for output.
+     * Initializes the world simulation.
      *
      * @param numPeople number of people in the simulation
      * @param grainGrowthRate rate at which grain replenishes
      * @param strategy reproduction strategy used by the people
      * @param fileName name of the output CSV file to write statistics
+     * @param seed the seed of the random source of this world
+     */
+    public WorldWriter(int numPeople, int grainGrowthRate, ReproductionStrategy strategy, String fileName, long seed) {
+        this(new WorldConfig(numPeople, grainGrowthRate, seed), strategy, fileName);
+    }
+
+    /**
+     * Constructs a WorldWriter instance from a world configuration.
+     * Initializes the world simulation.
+     *
+     * @param config the parameters of the world
+     * @param strategy reproduction strategy used by the people
+     * @param fileName name of the output CSV file to write statistics
      */
-    public WorldWriter(int numPeople, int grainGrowthRate, ReproductionStrategy strategy, String fileName) {
-        super(numPeople, grainGrowthRate, strategy);
+    public WorldWriter(WorldConfig config, ReproductionStrategy strategy, String fileName) {
+        this(config, strategy, fileName, OutputFormat.CSV);
+    }
+
+    /**
+     * Constructs a WorldWriter instance from a world configuration, writing in the given format.
+     * Initializes the world simulation.
+     *
+     * @param config the parameters of the world
+     * @param strategy reproduction strategy used by the people
+     * @param fileName name of the output file to write statistics
+     * @param format the format of the output file
+     */
+    public WorldWriter(WorldConfig config, ReproductionStrategy strategy, String fileName, OutputFormat format) {
+        super(config, strategy);
         this.fileName = fileName;
+        this.format = format;
+        this.series = record();
+    }
 
-        createPath();
-        // Initialize CSV file writer
-        try {
-            writer = new BufferedWriter(new FileWriter(filePath.toFile(), true));
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    /**
+     * Constructs a WorldWriter instance forked from a checkpoint, writing in the given format.
+     * Only the statistics from the tick of the checkpoint on are written.
+     *
+     * @param checkpoint the saved state of a world
+     * @param strategy reproduction strategy used by the people from the checkpoint on
+     * @param fileName name of the output file to write statistics
+     * @param format the format of the output file
+     * @param forkSeed the seed of the random source of the people from the checkpoint on
+     */
+    public WorldWriter(WorldCheckpoint checkpoint, ReproductionStrategy strategy, String fileName,
+                       OutputFormat format, long forkSeed) {
+        super(checkpoint, strategy, forkSeed);
+        this.fileName = fileName;
+        this.format = format;
+        this.series = record();
     }
 
     /**
-     * Creates the directory path and resolves the output CSV file path.
-     * If the directory does not exist, it will be created.
+     * Observes this world with an in-memory sink for its output file.
      */
-    private void createPath() {
+    private StatisticsSeries record() {
+        SeriesObserver recorder = new SeriesObserver();
+        addObserver(recorder);
+        return recorder.getSeries();
+    }
 
-        try {
-            // Create the directory if it doesn't exist
-            Path dirPath = Paths.get(outputPath);
-            if (!Files.exists(dirPath)) {
-                Files.createDirectories(dirPath);
-            }
+    /**
+     * @return the name of the file the results of this world belong to
+     */
+    public String getFileName() {
+        return fileName;
+    }
 
-            // Create the CSV file path
-            this.filePath = dirPath.resolve(fileName);
+    public OutputFormat getFormat() {
+        return format;
+    }
 
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    /**
+     * @return the statistics recorded since the results were last written
+     */
+    public StatisticsSeries getSeries() {
+        return series;
     }
 
     /**
-     * Writes the current statistics of the world simulation to the CSV file.
-     * Statistics include tick, total wealth, the Gini-index measuring inequality, number of each class.
+     * Hands all statistics recorded so far to the sink, to be appended to this world's
+     * output file, and clears them.
+     * Callers writing to the same file must do so one at a time, in the order
+     * the rows should appear.
      *
-     * @param world the World instance from which to retrieve statistics
-     * @param tick the current simulation tick number
+     * @param sink the sink writing the output files
      */
-    private void writeStatistics(World world, int tick) {
-        List<Person> people = world.getPeople();
-        double totalWealth = people.stream().mapToDouble(Person::getWealth).sum();
-        double maxWealth = people.stream().mapToDouble(Person::getWealth).max().orElse(0);
-        double avgWealth = totalWealth / people.size();
-
-        double meanDiff = 0;
-        int numLowerClass = 0;
-        int numMiddleClass = 0;
-        int numUpperClass = 0;
-
-        double oneThird = (1.0 / 3) * maxWealth;
-        double twoThirds = (2.0 / 3) * maxWealth;
-
-        for (Person p1 : people) {
-            double wealth = p1.getWealth();
-
-            if (wealth <= oneThird) {
-                numLowerClass++;
-            } else if (wealth <= twoThirds) {
-                numMiddleClass++;
-            } else {
-                numUpperClass++;
-            }
+    public void writeResults(ResultSink sink) {
+        writeResults(sink, fileName, format, getConfig(), getStrategy().toString(), series);
+    }
 
-            for (Person p2 : people) {
-                meanDiff += Math.abs(p1.getWealth() - p2.getWealth());
+    /**
+     * Hands a series to the sink, to be appended to an output file, and clears it.
+     * This is writeResults for a run simulated elsewhere, e.g. by a Worker.
+     *
+     * @param sink the sink writing the output files
+     * @param fileName the name of the output file
+     * @param format the format of the output file
+     * @param config the configuration of the run
+     * @param strategy the name of the reproduction strategy of the run
+     * @param series the statistics recorded by the run
+     */
+    static void writeResults(ResultSink sink, String fileName, OutputFormat format, WorldConfig config,
+                             String strategy, StatisticsSeries series) {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        long bytes;
+        if (format != OutputFormat.CSV) {
+            byte[] block = BinaryRunFile.encode(config, strategy, series, format == OutputFormat.PACKED
+                    ? BinaryRunFile.Encoding.PACKED : BinaryRunFile.Encoding.FIXED);
+            sink.submit(fileName, block);
+            bytes = block.length;
+        } else {
+            StringBuilder rows = new StringBuilder(series.size() * 40);
+            for (int i = 0; i < series.size(); i++) {
+                appendRow(rows, series.getTick(i), series.getTotalWealth(i), series.getGini(i),
+                        series.getNumLowerClass(i), series.getNumMiddleClass(i), series.getNumUpperClass(i));
             }
+            sink.submit(fileName, rows);
+            bytes = rows.length(); // the rows are ASCII
         }
-        double gini = meanDiff / (2 * people.size() * people.size() * avgWealth);
-
-        // Write to CSV file in the exact format
-        try {
-            String stats = String.format("%d, %.2f, %.4f, %d, %d, %d",
-                    tick, totalWealth, gini, numLowerClass, numMiddleClass, numUpperClass);
-            writer.write(stats + "\n");
-            writer.flush();
-        } catch (IOException e) {
-            e.printStackTrace();
+        series.clear();
+        if (Metrics.ENABLED) {
+            Metrics.recordBatch(Phase.OUTPUT, fileName, bytes, start);
         }
     }
 
     /**
-     * Prints statistics to the console and writes them to the CSV file.
-     * This method overrides the parent class's printStatistics to add file output.
+     * Appends one statistics row in the exact CSV format.
+     * Statistics include tick, total wealth, the Gini-index measuring inequality, number of each class.
+     */
+    static void appendRow(StringBuilder out, int tick, double totalWealth, double gini,
+                          int numLowerClass, int numMiddleClass, int numUpperClass) {
+        out.append(tick).append(", ");
+        appendFixed(out, totalWealth, 2);
+        out.append(", ");
+        appendFixed(out, gini, 4);
+        out.append(", ").append(numLowerClass)
+                .append(", ").append(numMiddleClass)
+                .append(", ").append(numUpperClass)
+                .append('\n');
+    }
+
+    /**
+     * Appends a value with a fixed number of decimals, as "%.Nf" would in the root locale.
+     * The root locale is deliberate: the decimal comma of some default locales would split
+     * the value into two columns of the comma-separated row.
+     * Whole numbers, such as the total wealth, and non-negative values that are clearly
+     * not halfway between two outputs are written directly. NaN, negative and very large
+     * values, or fractions too close to a tie to round safely, go through String.format.
      *
-     * @param tick the current simulation tick number
+     * @param out the builder to append to
+     * @param value the value to append
+     * @param decimals the number of decimals, from 1 to 4
      */
-    public void printStatistics(int tick) {
-        super.printStatistics(tick);
-        writeStatistics(this, tick);
+    static void appendFixed(StringBuilder out, double value, int decimals) {
+        long units = fastUnits(value, decimals);
+        if (units < 0) {
+            out.append(String.format(Locale.ROOT, "%." + decimals + "f", value));
+            return;
+        }
+
+        long scale = POWERS_OF_TEN[decimals];
+        out.append(units / scale).append('.');
+        long remainder = units % scale;
+        for (long digit = scale / 10; digit > 0; digit /= 10) {
+            out.append((char) ('0' + remainder / digit % 10));
+        }
     }
 
+    /**
+     * Returns the value appendFixed writes as a whole number of units of the last decimal,
+     * e.g. 1234 for 0.1234 with 4 decimals. Dividing the units by ten to the number of
+     * decimals gives back a double that appendFixed writes as the same text.
+     *
+     * @param value the value to convert
+     * @param decimals the number of decimals, from 1 to 4
+     * @return the units, or NO_UNITS if the text is no such number: NaN, infinite, a negative
+     *         zero such as -0.00, or beyond the range of a long
+     */
+    static long fixedUnits(double value, int decimals) {
+        long units = fastUnits(value, decimals);
+        if (units >= 0) {
+            return units;
+        }
+        String text = String.format(Locale.ROOT, "%." + decimals + "f", value);
+        try {
+            units = Long.parseLong(text.replace(".", ""));
+        } catch (NumberFormatException e) {
+            return NO_UNITS;
+        }
+        return units == 0 && text.startsWith("-") ? NO_UNITS : units;
+    }
 
+    /**
+     * @return the units of a value that can be rounded without String.format, or -1
+     */
+    private static long fastUnits(double value, int decimals) {
+        long scale = POWERS_OF_TEN[decimals];
+        double scaled = value * scale;
+        long units = -1; // stays negative for values left to String.format
+        if (value >= 0 && Double.doubleToRawLongBits(value) != Long.MIN_VALUE) { // not NaN, negative or -0.0
+            if (value == Math.rint(value) && value < MAX_FAST_WHOLE) {
+                units = (long) value * scale;
+            } else if (scaled < MAX_FAST_SCALED) {
+                units = (long) scaled;
+                double fraction = scaled - units;
+                if (Math.abs(fraction - 0.5) < TIE_MARGIN) {
+                    units = -1;
+                } else if (fraction > 0.5) {
+                    units++;
+                }
+            }
+        }
+        return units;
+    }
 }
@@ -26,8 +26,10 @@ input_output_pairs = [
 
 def process_file(input_file, output_file):
     """
-    Process the input CSV file by grouping rows by tick % tick_interval,
-    then calculate summary statistics per tick_interval and write them to output CSV.
+    Process the input CSV file by grouping rows by tick,
+    then calculate summary statistics per tick and write them to output CSV.
+    The Java simulation already writes these files while it runs, so this is only
+    needed for CSV files produced without it.
 
     Args:
         input_file (str): Path to the input CSV file.
@@ -35,21 +37,20 @@ def process_file(input_file, output_file):
     """
     data_by_tick = defaultdict(list)
 
-    # Tick_Interval, when changing this, also changing MAX_TICK in Params.java
-    tick_interval = 1000 + 1
-    # Read input CSV and group data by tick % tick_interval
+    # Read input CSV and group data by tick, every run restarts at tick 0
     with open(input_file, newline='') as csvfile:
         reader = csv.reader(csvfile)
         for row in reader:
-            tick = int(row[0]) % tick_interval
+            tick = int(row[0])
             values = list(map(float, row[1:]))
             data_by_tick[tick].append(values)
 
     # Write summary statistics to output CSV
     with open(output_file, 'w', newline='') as out_csv:
         writer = csv.writer(out_csv)
-        # Write header row
-        writer.writerow(['tick', 'totalWealth', 'gini', 'numLowerClass', 'numMiddleClass', 'numUpperClass'])
+        # Write header row, with the number of rows of each tick as the simulation writes it
+        writer.writerow(['tick', 'totalWealth', 'gini', 'numLowerClass', 'numMiddleClass', 'numUpperClass',
+                         'replicates'])
 
          # Calculate statistics for each tick and write to CSV
         for tick in sorted(data_by_tick.keys()):
@@ -63,7 +64,32 @@ def process_file(input_file, output_file):
             num_upper_class = sum(int(r[4]) for r in rows) // len(rows)
 
             # Write a row of aggregated data for this tick
-            writer.writerow([tick, round(total_wealth, 2), avg_gini, num_lower_class, num_middle_class, num_upper_class])
+            writer.writerow([tick, round(total_wealth, 2), avg_gini, num_lower_class, num_middle_class, num_upper_class,
+                             len(rows)])
+
+def covers_input(input_file, output_file):
+    """
+    Check whether a processed CSV file aggregates every row of its input CSV file.
+    The simulation appends the rows of each run to the input file, but writes the processed
+    file from the runs of its last invocation only, so the processed file may miss earlier runs.
+
+    Args:
+        input_file (str): Path to the input CSV file.
+        output_file (str): Path to the processed CSV file.
+
+    Returns:
+        bool: True if the replicates counted in the processed file add up to the rows of the input file.
+    """
+    if not os.path.exists(output_file):
+        return False
+    with open(output_file, newline='') as csvfile:
+        reader = csv.DictReader(csvfile)
+        if 'replicates' not in (reader.fieldnames or []):
+            return False
+        aggregated_rows = sum(int(row['replicates']) for row in reader)
+    with open(input_file, newline='') as csvfile:
+        input_rows = sum(1 for row in csv.reader(csvfile) if row)
+    return aggregated_rows == input_rows
 
 def plot_output(output_file, input_filename_base):
     """
@@ -135,5 +161,7 @@ def plot_output(output_file, input_filename_base):
 # Process each pair of input/output files, generate processed CSV and plot
 for input_file, output_file in input_output_pairs:
     base_name = os.path.splitext(os.path.basename(input_file))[0] # Get filename without extension
-    process_file(input_file, output_file) # Process and generate processed CSV
+    # Keep a processed file only if it aggregates every row of its CSV, which may hold runs of earlier invocations
+    if not covers_input(input_file, output_file):
+        process_file(input_file, output_file) # Process and generate processed CSV
     plot_output(output_file, base_name)  # Generate and save plot for processed data
\ No newline at end of file